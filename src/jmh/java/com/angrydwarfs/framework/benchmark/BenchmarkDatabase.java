@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Подключение бенчмарков к PostgreSQL со схемой приложения и засев тестовых данных.
+ * Схему создает приложение: перед первым запуском приложение запускается один раз с той же базой -
+ * hibernate создает таблицы, data-postgres.sql - дополнительные индексы.
+ * Параметры подключения берутся из переменных окружения: JDBC_URL (по умолчанию база из application.yml),
+ * DB_USER (по умолчанию dfuser) и dbSecret - пароль, как у приложения.
+ * Данные засеваются при первом запуске бенчмарка и остаются в базе: пользователи bench_1..bench_N с email
+ * в домене benchmark.local, их activity и токены. Повторный запуск использует уже засеянные данные.
+ * @version 0.001
+ * @author habatoo
+ */
+public final class BenchmarkDatabase {
+    static final int USERS = 1000;
+
+    private static final String DEFAULT_URL = "jdbc:postgresql://localhost:5432/dfdatabase?reWriteBatchedInserts=true";
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<!:):(\\w+)");
+
+    private BenchmarkDatabase() {
+    }
+
+    public static Connection connect() throws SQLException {
+        String url = System.getenv("JDBC_URL");
+        String user = System.getenv("DB_USER");
+        return DriverManager.getConnection(
+                url == null ? DEFAULT_URL : url,
+                user == null ? "dfuser" : user,
+                System.getenv("dbSecret"));
+    }
+
+    /**
+     * Засевает пользователей bench_1..bench_{@value #USERS}, если их еще нет.
+     */
+    public static synchronized void seedUsers(Connection connection) throws SQLException {
+        if (count(connection, "SELECT count(*) FROM usr WHERE user_email LIKE '%@benchmark.local'") > 0) {
+            return;
+        }
+        execute(connection, "INSERT INTO usr(user_name, user_email, user_password, user_creation_date) " +
+                "SELECT 'bench_' || g, 'bench_' || g || '@benchmark.local', 'benchmark', now() " +
+                "FROM generate_series(1, " + USERS + ") g");
+    }
+
+    /**
+     * Засевает {@code count} activity, поровну между пользователями bench_*, если их activity еще нет.
+     * Дата создания убывает с номером activity, заголовок и описание составлены из русских и английских слов,
+     * каждая четвертая activity получает тэг из таблицы TAGS. Засев миллиона activity занимает около минуты.
+     */
+    public static synchronized void seedActivities(Connection connection, int count) throws SQLException {
+        seedUsers(connection);
+        if (count(connection, "SELECT count(*) FROM activity a JOIN usr u ON u.user_id = a.activity_user_id " +
+                "WHERE u.user_email LIKE '%@benchmark.local'") > 0) {
+            return;
+        }
+        String words = "ARRAY['morning', 'running', 'park', 'bike', 'river', 'swimming', 'hiking', 'mountains', " +
+                "'yoga', 'city', 'утренний', 'бег', 'парк', 'велосипед', 'река', 'плавание', 'поход', 'горы', " +
+                "'йога', 'город']";
+        execute(connection, "INSERT INTO activity(activity_index, activity_title, activity_description, " +
+                "activity_creation_date, activity_user_id) " +
+                "SELECT md5(g::text), w[g % 20 + 1] || ' ' || w[g / 20 % 20 + 1], " +
+                "w[g / 7 % 20 + 1] || ' ' || w[g / 400 % 20 + 1] || ' ' || w[g / 13 % 20 + 1], " +
+                "now() - g * interval '1 minute', u.user_id " +
+                "FROM generate_series(1, " + count + ") g " +
+                "CROSS JOIN (SELECT " + words + " AS w) v " +
+                "JOIN usr u ON u.user_name = 'bench_' || (g % " + USERS + " + 1)");
+        execute(connection, "INSERT INTO activity_tags(activity_id, tag_id) " +
+                "SELECT a.activity_id, t.tag_id FROM activity a " +
+                "JOIN usr u ON u.user_id = a.activity_user_id AND u.user_email LIKE '%@benchmark.local' " +
+                "JOIN (SELECT tag_id, row_number() OVER (ORDER BY tag_id) - 1 AS n, count(*) OVER () AS total " +
+                "FROM tags) t ON t.n = a.activity_id / 4 % t.total " +
+                "WHERE a.activity_id % 4 = 0");
+        execute(connection, "ANALYZE activity");
+        execute(connection, "ANALYZE activity_tags");
+    }
+
+    /**
+     * Засевает {@code count} активных токенов длиной около 200 символов, если их еще нет.
+     * @return строки засеянных токенов
+     */
+    public static synchronized List<String> seedTokens(Connection connection, int count) throws SQLException {
+        seedUsers(connection);
+        if (count(connection, "SELECT count(*) FROM tokens WHERE token LIKE 'bench.%'") == 0) {
+            execute(connection, "INSERT INTO tokens(token, token_status, token_creation_date, token_expiry_date, " +
+                    "token_user_id) " +
+                    "SELECT 'bench.' || md5(g::text) || md5((g + 1)::text) || md5((g + 2)::text) " +
+                    "|| md5((g + 3)::text) || md5((g + 4)::text) || md5((g + 5)::text), true, now(), " +
+                    "now() + interval '1 day', u.user_id " +
+                    "FROM generate_series(1, " + count + ") g " +
+                    "JOIN usr u ON u.user_name = 'bench_' || (g % " + USERS + " + 1)");
+            execute(connection, "ANALYZE tokens");
+        }
+        List<String> tokens = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT token FROM tokens WHERE token LIKE 'bench.%' LIMIT " + count)) {
+            while (resultSet.next()) {
+                tokens.add(resultSet.getString(1));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Подготавливает native запрос репозитория - именованные параметры {@code :name} заменяются на {@code ?}.
+     * @param sql - текст запроса с именованными параметрами
+     * @return запрос, значения параметров задаются по имени
+     */
+    public static NamedStatement prepare(Connection connection, String sql) throws SQLException {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = NAMED_PARAMETER.matcher(sql);
+        StringBuffer jdbcSql = new StringBuffer();
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+            matcher.appendReplacement(jdbcSql, "?");
+        }
+        matcher.appendTail(jdbcSql);
+        return new NamedStatement(connection.prepareStatement(jdbcSql.toString()), names);
+    }
+
+    private static long count(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Подготовленный запрос с параметрами по имени.
+     */
+    public static final class NamedStatement implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final List<String> names;
+
+        private NamedStatement(PreparedStatement statement, List<String> names) {
+            this.statement = statement;
+            this.names = names;
+        }
+
+        public NamedStatement set(String name, Object value) throws SQLException {
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).equals(name)) {
+                    statement.setObject(i + 1, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Выполняет запрос и читает все строки выдачи.
+         * @return количество строк
+         */
+        public int executeAndCount() throws SQLException {
+            int rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int columns = resultSet.getMetaData().getColumnCount();
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        resultSet.getObject(i);
+                    }
+                    rows++;
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            statement.close();
+        }
+    }
+}
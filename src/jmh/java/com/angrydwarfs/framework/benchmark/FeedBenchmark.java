@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.repository.ActivityRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лента activity пользователя на миллионе activity: страница из {@link ActivityRepository#FEED_PAGE} -
+ * keyset пагинация одним запросом - против прежней выдачи всех activity пользователя с загрузкой тэгов
+ * отдельным запросом на каждую activity. У каждого из 1000 пользователей по 1000 activity.
+ * Требует PostgreSQL, данные засеваются при первом запуске, см. {@link BenchmarkDatabase}.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="FeedBenchmark"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeedBenchmark {
+    private static final int ACTIVITIES = 1_000_000;
+    private static final int PAGE_SIZE = 20;
+    private static final LocalDateTime FIRST_PAGE_DATE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    /**
+     * Количество activity на предыдущих страницах ленты.
+     */
+    @Param({"0", "500"})
+    private int depth;
+
+    private Connection connection;
+    private BenchmarkDatabase.NamedStatement feedPage;
+    private PreparedStatement userActivities;
+    private PreparedStatement activityTags;
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<LocalDateTime> cursorDates = new ArrayList<>();
+    private final List<Long> cursorIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.connect();
+        BenchmarkDatabase.seedActivities(connection, ACTIVITIES);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet users = statement.executeQuery("SELECT user_id FROM usr " +
+                     "WHERE user_email LIKE '%@benchmark.local' ORDER BY user_id LIMIT 100")) {
+            while (users.next()) {
+                userIds.add(users.getLong(1));
+            }
+        }
+        try (PreparedStatement cursor = connection.prepareStatement("SELECT activity_creation_date, activity_id " +
+                "FROM activity WHERE activity_user_id = ? " +
+                "ORDER BY activity_creation_date DESC, activity_id DESC OFFSET ? LIMIT 1")) {
+            for (Long userId : userIds) {
+                if (depth == 0) {
+                    cursorDates.add(FIRST_PAGE_DATE);
+                    cursorIds.add(Long.MAX_VALUE);
+                    continue;
+                }
+                cursor.setLong(1, userId);
+                cursor.setInt(2, depth - 1);
+                try (ResultSet resultSet = cursor.executeQuery()) {
+                    resultSet.next();
+                    cursorDates.add(resultSet.getObject(1, LocalDateTime.class));
+                    cursorIds.add(resultSet.getLong(2));
+                }
+            }
+        }
+
+        feedPage = BenchmarkDatabase.prepare(connection, ActivityRepository.FEED_PAGE);
+        userActivities = connection.prepareStatement("SELECT a.* FROM activity a WHERE a.activity_user_id = ?");
+        activityTags = connection.prepareStatement("SELECT t.* FROM activity_tags l " +
+                "JOIN tags t ON t.tag_id = l.tag_id WHERE l.activity_id = ?");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        feedPage.close();
+        userActivities.close();
+        activityTags.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int keysetPage() throws SQLException {
+        int user = ThreadLocalRandom.current().nextInt(userIds.size());
+        return feedPage.set("userId", userIds.get(user))
+                .set("beforeDate", cursorDates.get(user))
+                .set("beforeId", cursorIds.get(user))
+                .set("limit", PAGE_SIZE)
+                .executeAndCount();
+    }
+
+    @Benchmark
+    public int allActivitiesWithTags() throws SQLException {
+        userActivities.setLong(1, userIds.get(ThreadLocalRandom.current().nextInt(userIds.size())));
+        List<Long> activityIds = new ArrayList<>();
+        try (ResultSet activities = userActivities.executeQuery()) {
+            while (activities.next()) {
+                activityIds.add(activities.getLong("activity_id"));
+            }
+        }
+        int tags = 0;
+        for (Long activityId : activityIds) {
+            activityTags.setLong(1, activityId);
+            try (ResultSet resultSet = activityTags.executeQuery()) {
+                while (resultSet.next()) {
+                    tags++;
+                }
+            }
+        }
+        return activityIds.size() + tags;
+    }
+}
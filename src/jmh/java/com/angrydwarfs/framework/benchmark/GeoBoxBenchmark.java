@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.service.GeoBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск точек в радиусе на миллионе случайных точек: отбор по описанному прямоугольнику {@link GeoBox}
+ * с точным расстоянием только для попавших в него точек против расчета расстояния до каждой точки.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="GeoBoxBenchmark"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeoBoxBenchmark {
+    private static final int POINTS = 1_000_000;
+
+    @Param({"1000", "10000", "100000"})
+    private double radiusMeters;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double centerLatitude;
+    private double centerLongitude;
+    private GeoBox box;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        // точки в прямоугольнике около 1000 x 1000 км вокруг центра
+        centerLatitude = 55.75;
+        centerLongitude = 37.62;
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = centerLatitude + (random.nextDouble() - 0.5) * 9;
+            longitudes[i] = centerLongitude + (random.nextDouble() - 0.5) * 16;
+        }
+        box = GeoBox.around(centerLatitude, centerLongitude, radiusMeters);
+    }
+
+    @Benchmark
+    public int boxThenHaversine() {
+        int found = 0;
+        for (int i = 0; i < POINTS; i++) {
+            if (box.contains(latitudes[i], longitudes[i])
+                    && GeoBox.distanceMeters(centerLatitude, centerLongitude, latitudes[i], longitudes[i]) <= radiusMeters) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int haversineOnly() {
+        int found = 0;
+        for (int i = 0; i < POINTS; i++) {
+            if (GeoBox.distanceMeters(centerLatitude, centerLongitude, latitudes[i], longitudes[i]) <= radiusMeters) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.config.FastMoney;
+import com.angrydwarfs.framework.config.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение {@link Money} и {@link FastMoney} на операциях расчета стоимости подписки.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="MoneyBenchmark -prof gc"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private String priceString;
+    private String feeString;
+    private Money price;
+    private FastMoney fastPrice;
+    private FastMoney fastFee;
+    private int months;
+
+    @Setup
+    public void setUp() {
+        priceString = "499.90";
+        feeString = "35.05";
+        price = new Money(priceString, USD);
+        fastPrice = FastMoney.of(priceString, USD);
+        fastFee = FastMoney.of(feeString, USD);
+        months = 12;
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return new Money(priceString, USD);
+    }
+
+    @Benchmark
+    public FastMoney parseFastMoney() {
+        return FastMoney.of(priceString, USD);
+    }
+
+    @Benchmark
+    public Money multiplyMoney() {
+        return price.multiplyByInt(months);
+    }
+
+    @Benchmark
+    public FastMoney multiplyFastMoney() {
+        return fastPrice.multipliedBy(months);
+    }
+
+    @Benchmark
+    public Money divideMoney() {
+        return price.divideByInt(4);
+    }
+
+    @Benchmark
+    public FastMoney divideFastMoney() {
+        return fastPrice.dividedBy(4, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public Money addMoney() {
+        return price.addMoney(feeString);
+    }
+
+    @Benchmark
+    public FastMoney addFastMoney() {
+        return fastPrice.plus(fastFee);
+    }
+
+    /**
+     * Годовая стоимость со скидкой за месяц и сбором: price * 12 - price + fee.
+     */
+    @Benchmark
+    public Money yearlyPriceMoney() {
+        Money yearly = price.multiplyByInt(months);
+        return yearly.subtractMoney(price.getValue().toPlainString()).addMoney(feeString);
+    }
+
+    @Benchmark
+    public long yearlyPriceFastMoney() {
+        return fastPrice.multipliedBy(months).minus(fastPrice).plus(fastFee).getMinorUnits();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.models.Activity;
+import com.angrydwarfs.framework.models.Enums.EMainRole;
+import com.angrydwarfs.framework.models.MainRole;
+import com.angrydwarfs.framework.models.Token;
+import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.security.jwt.JwtClaims;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение principal на запрос для пользователя с большим графом: {@link UserDetailsImpl} из данных jwt токена
+ * против сущности {@link User} с EAGER коллекциями токенов и activity, как при loadUserByUsername.
+ * Граф сущностей собирается из заранее прочитанных значений так же, как hibernate заполняет поля, - без
+ * result set и контекста персистентности, поэтому реальные затраты загрузки пользователя из БД еще больше.
+ * Выделение памяти на запрос - gc.alloc.rate.norm профилировщика gc.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="PrincipalBenchmark -prof gc"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrincipalBenchmark {
+    /**
+     * Количество токенов и количество activity пользователя.
+     */
+    @Param({"10", "1000", "5000"})
+    private int graphSize;
+
+    private Claims claims;
+    private String token;
+    private String[] tokenValues;
+    private String[] titles;
+    private String[] descriptions;
+    private LocalDateTime creationDate;
+
+    @Setup
+    public void setUp() {
+        Date now = new Date();
+        claims = Jwts.claims();
+        claims.setSubject("heavy_user");
+        claims.setId("6f1c2a4e-3b7d-4f0a-9c58-2d9e7b1a0c34");
+        claims.setIssuedAt(now);
+        claims.setExpiration(new Date(now.getTime() + TimeUnit.DAYS.toMillis(1)));
+        claims.put("uid", 42L);
+        claims.put("email", "heavy_user@example.com");
+        claims.put("roles", Arrays.asList(EMainRole.ROLE_USER.name(), EMainRole.ROLE_MODERATOR.name()));
+        token = "header.payload.signature";
+
+        tokenValues = new String[graphSize];
+        titles = new String[graphSize];
+        descriptions = new String[graphSize];
+        for (int i = 0; i < graphSize; i++) {
+            tokenValues[i] = "token-" + i;
+            titles[i] = "Activity " + i;
+            descriptions[i] = "Description of activity " + i;
+        }
+        creationDate = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public UserDetailsImpl claimsPrincipal() {
+        return UserDetailsImpl.build(new JwtClaims(token, claims));
+    }
+
+    @Benchmark
+    public UserDetailsImpl entityPrincipal() {
+        User user = new User("heavy_user", "heavy_user@example.com", "$2a$10$hash");
+        user.setId(42L);
+        user.getMainRoles().add(new MainRole(EMainRole.ROLE_USER));
+        user.getMainRoles().add(new MainRole(EMainRole.ROLE_MODERATOR));
+        for (int i = 0; i < graphSize; i++) {
+            Token userToken = new Token(tokenValues[i], user);
+            userToken.setId((long) i);
+            userToken.setActive(true);
+            userToken.setCreationDate(creationDate);
+            userToken.setExpiryDate(creationDate);
+            user.getTokens().add(userToken);
+
+            Activity activity = new Activity();
+            activity.setId((long) i);
+            activity.setActivityTitle(titles[i]);
+            activity.setActivityDescription(descriptions[i]);
+            activity.setCreationDate(creationDate);
+            activity.setUserActivities(user);
+            user.getActivities().add(activity);
+        }
+        return UserDetailsImpl.build(user);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.repository.ActivityRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка полнотекстового поиска activity на миллионе activity - запросы страницы поиска из
+ * {@link ActivityRepository} по GIN индексу idx_activity_search, без фильтра и с фильтром по тэгу.
+ * Строки поиска на русском и английском в других формах слов, чем в засеянных заголовках и описаниях.
+ * Требует PostgreSQL, данные засеваются при первом запуске, см. {@link BenchmarkDatabase}.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="SearchBenchmark"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    private static final int ACTIVITIES = 1_000_000;
+    private static final int PAGE_SIZE = 20;
+    private static final String[] QUERIES = {
+            "run", "mountain hikes", "yoga in the city", "на велосипеде в парке", "походы в горах", "река и плавание"};
+
+    private Connection connection;
+    private BenchmarkDatabase.NamedStatement searchPage;
+    private BenchmarkDatabase.NamedStatement searchPageByTags;
+    private String tagName;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.connect();
+        BenchmarkDatabase.seedActivities(connection, ACTIVITIES);
+        try (Statement statement = connection.createStatement();
+             ResultSet tags = statement.executeQuery("SELECT tag_name FROM tags ORDER BY tag_id LIMIT 1")) {
+            tagName = tags.next() ? tags.getString(1) : "";
+        }
+        searchPage = BenchmarkDatabase.prepare(connection,
+                ActivityRepository.SEARCH_SELECT + ActivityRepository.SEARCH_ORDER);
+        searchPageByTags = BenchmarkDatabase.prepare(connection, ActivityRepository.SEARCH_SELECT +
+                ActivityRepository.SEARCH_TAG_FILTER + ActivityRepository.SEARCH_ORDER);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        searchPage.close();
+        searchPageByTags.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int search() throws SQLException {
+        return searchPage.set("query", randomQuery())
+                .set("limit", PAGE_SIZE)
+                .set("offset", 0)
+                .executeAndCount();
+    }
+
+    @Benchmark
+    public int searchByTag() throws SQLException {
+        return searchPageByTags.set("query", randomQuery())
+                .set("tags", tagName)
+                .set("tagCount", 1)
+                .set("limit", PAGE_SIZE)
+                .set("offset", 0)
+                .executeAndCount();
+    }
+
+    private static String randomQuery() {
+        return QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)];
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.benchmark;
+
+import com.angrydwarfs.framework.security.jwt.TokenRevocationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка статуса токена на каждом запросе: {@link TokenRevocationCache} против поиска строки токена
+ * в таблице TOKENS, как TokenRepository.findByToken до кэша. Результат - проверок в секунду на 4 потоках.
+ * Бенчмарк databaseLookup требует PostgreSQL, см. {@link BenchmarkDatabase}.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="TokenRevocationBenchmark"
+ * Без базы: mvn -Pjmh test-compile exec:exec -Djmh.args="TokenRevocationBenchmark.cache"
+ * @version 0.001
+ * @author habatoo
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TokenRevocationBenchmark {
+    private static final int TOKENS = 100_000;
+
+    private TokenRevocationCache cache;
+    private String[] tokens;
+    private String[] unknownTokens;
+
+    @Setup
+    public void setUp() {
+        cache = new TokenRevocationCache(new SimpleMeterRegistry(), TOKENS * 2);
+        Random random = new Random(42);
+        tokens = new String[TOKENS];
+        unknownTokens = new String[TOKENS];
+        long expiry = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = randomToken(random);
+            unknownTokens[i] = randomToken(random);
+            if (i % 100 == 0) {
+                cache.revoke(tokens[i], expiry);
+            } else {
+                cache.putActive(tokens[i], expiry);
+            }
+        }
+    }
+
+    /**
+     * Строка размером с jwt токен приложения.
+     */
+    private static String randomToken(Random random) {
+        char[] chars = new char[200];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    @Benchmark
+    public Boolean cacheHit() {
+        return cache.isActive(tokens[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+
+    @Benchmark
+    public Boolean cacheMiss() {
+        return cache.isActive(unknownTokens[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+
+    @Benchmark
+    public int databaseLookup(Database database) throws SQLException {
+        return database.findByToken
+                .set("token", database.tokens.get(ThreadLocalRandom.current().nextInt(database.tokens.size())))
+                .executeAndCount();
+    }
+
+    /**
+     * Подключение потока к базе с засеянными токенами.
+     */
+    @State(Scope.Thread)
+    public static class Database {
+        private Connection connection;
+        private BenchmarkDatabase.NamedStatement findByToken;
+        private List<String> tokens;
+
+        @Setup
+        public void setUp() throws SQLException {
+            connection = BenchmarkDatabase.connect();
+            tokens = BenchmarkDatabase.seedTokens(connection, TOKENS);
+            findByToken = BenchmarkDatabase.prepare(connection, "SELECT t.token_id, t.token, t.token_creation_date, " +
+                    "t.token_expiry_date, t.token_status, t.token_user_id FROM tokens t WHERE t.token = :token");
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            findByToken.close();
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.config;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный по размеру кэш с вытеснением давно не использованных записей и сроком жизни записи.
+ * Чтение и запись без блокировок - {@link ConcurrentHashMap}, время последнего обращения хранится в записи.
+ * При превышении размера один поток вытесняет сначала записи с истекшим сроком, затем
+ * {@link #EVICT_PERCENT}% самых давно использованных записей, остальные потоки вытеснение не ждут -
+ * размер может ненадолго превысить предел. Стоимость вытеснения распределяется на вставки
+ * между вытеснениями, поэтому заполненный кэш продолжает принимать новые записи.
+ * @version 0.001
+ * @author habatoo
+ */
+public final class BoundedCache<K, V> {
+    public static final int EVICT_PERCENT = 10;
+
+    private final Map<K, Node<V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong evictions = new AtomicLong();
+    private final int maxSize;
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = Math.max(maxSize, 1);
+    }
+
+    /**
+     * @param key - ключ
+     * @param now - текущее время в мс
+     * @return значение, {@code null} - если записи нет или ее срок истек
+     */
+    public V get(K key, long now) {
+        Node<V> node = entries.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.expiresAt <= now) {
+            entries.remove(key, node);
+            return null;
+        }
+        node.accessedAt = System.nanoTime();
+        return node.value;
+    }
+
+    /**
+     * @param key - ключ
+     * @param value - значение
+     * @param expiresAt - время истечения срока записи в мс
+     */
+    public void put(K key, V value, long expiresAt) {
+        entries.put(key, new Node<>(value, expiresAt));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Удаляет записи с истекшим сроком.
+     */
+    public void evictExpired(long now) {
+        Iterator<Node<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            evictExpired(System.currentTimeMillis());
+            int excess = entries.size() - maxSize;
+            if (excess <= 0) {
+                return;
+            }
+
+            // порог времени обращения, ниже которого записи вытесняются
+            int target = Math.min(excess + maxSize * EVICT_PERCENT / 100, entries.size());
+            long[] accessTimes = new long[entries.size()];
+            int count = 0;
+            for (Node<V> node : entries.values()) {
+                if (count == accessTimes.length) {
+                    break;
+                }
+                accessTimes[count++] = node.accessedAt;
+            }
+            if (count == 0) {
+                return;
+            }
+            Arrays.sort(accessTimes, 0, count);
+            long threshold = accessTimes[Math.min(target, count) - 1];
+
+            int removed = 0;
+            Iterator<Node<V>> iterator = entries.values().iterator();
+            while (removed < target && iterator.hasNext()) {
+                if (iterator.next().accessedAt <= threshold) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+            evictions.addAndGet(removed);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private final long expiresAt;
+        private volatile long accessedAt = System.nanoTime();
+
+        private Node(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемая таблица курсов валют. Курс задается к базовой валюте - сколько единиц базовой валюты стоит
+ * одна единица валюты. При создании таблицы для каждой пары валют заранее вычисляется курс перевода
+ * минимальных единиц (с учетом {@link Currency#getDefaultFractionDigits()} обеих валют) - целое число из
+ * {@link #RATE_PRECISION} значащих цифр и число знаков после запятой, свое для каждой пары, поэтому курс пары
+ * далеких по стоимости валют не теряет точность и не округляется до нуля. Перевод суммы - одно умножение
+ * и одно деление long с округлением. Для сумм, произведение которых на курс не помещается в long,
+ * и для курсов с числом знаков больше 18 - перевод через BigInteger.
+ * Таблица не меняется после создания и безопасно читается из любых потоков без блокировок,
+ * новая таблица курсов целиком заменяет старую.
+ * @param "baseCurrency" - базовая валюта курсов
+ * @param "rates" - курсы валют к базовой валюте
+ * @param "loadedAt" - время загрузки курсов в мс
+ */
+public final class ExchangeRateTable {
+    /** Количество значащих цифр курса пересчета минимальных единиц. */
+    public static final int RATE_PRECISION = 12;
+    private static final MathContext RATE_CONTEXT = new MathContext(RATE_PRECISION, RoundingMode.HALF_EVEN);
+    private static final int MAX_FAST_SCALE = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_FAST_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_FAST_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Currency baseCurrency;
+    private final Map<Currency, Integer> indexes;
+    private final Map<Currency, BigDecimal> rates;
+    private final long[][] pairRates;
+    private final int[][] pairScales;
+    private final long[][] fastLimits;
+    private final long loadedAt;
+
+    /**
+     * @param baseCurrency - базовая валюта, ее курс всегда 1
+     * @param rates - стоимость единицы валюты в единицах базовой валюты
+     * @param loadedAt - время загрузки курсов в мс
+     * @throws IllegalArgumentException - если курс не положительный
+     */
+    public ExchangeRateTable(Currency baseCurrency, Map<Currency, BigDecimal> rates, long loadedAt) {
+        Map<Currency, BigDecimal> all = new HashMap<>(rates);
+        all.put(baseCurrency, BigDecimal.ONE);
+
+        Currency[] currencies = all.keySet().toArray(new Currency[0]);
+        Map<Currency, Integer> index = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++) {
+            BigDecimal rate = all.get(currencies[i]);
+            if (rate == null || rate.signum() <= 0) {
+                throw new IllegalArgumentException("Exchange rate of " + currencies[i] + " must be positive: " + rate);
+            }
+            index.put(currencies[i], i);
+        }
+
+        this.pairRates = new long[currencies.length][currencies.length];
+        this.pairScales = new int[currencies.length][currencies.length];
+        this.fastLimits = new long[currencies.length][currencies.length];
+        for (int from = 0; from < currencies.length; from++) {
+            for (int to = 0; to < currencies.length; to++) {
+                BigDecimal pairRate = pairRate(all.get(currencies[from]), scale(currencies[from]),
+                        all.get(currencies[to]), scale(currencies[to]));
+                long unscaled = pairRate.unscaledValue().longValueExact();
+                pairRates[from][to] = unscaled;
+                pairScales[from][to] = pairRate.scale();
+                // -1 - только перевод через BigInteger
+                fastLimits[from][to] = pairRate.scale() > MAX_FAST_SCALE ? -1 : Long.MAX_VALUE / unscaled;
+            }
+        }
+
+        this.baseCurrency = baseCurrency;
+        this.indexes = Collections.unmodifiableMap(index);
+        this.rates = Collections.unmodifiableMap(all);
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * @param baseCurrency - базовая валюта
+     * @return таблица, в которой есть только базовая валюта
+     */
+    public static ExchangeRateTable empty(Currency baseCurrency) {
+        return new ExchangeRateTable(baseCurrency, Collections.emptyMap(), System.currentTimeMillis());
+    }
+
+    public Currency getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return валюты, для которых известен курс, включая базовую
+     */
+    public Set<Currency> getCurrencies() {
+        return indexes.keySet();
+    }
+
+    public boolean contains(Currency currency) {
+        return indexes.containsKey(currency);
+    }
+
+    /**
+     * @param currency - валюта
+     * @return стоимость единицы валюты в единицах базовой валюты, null - если курса нет
+     */
+    public BigDecimal getRate(Currency currency) {
+        return rates.get(currency);
+    }
+
+    /**
+     * @param from - исходная валюта
+     * @param to - валюта результата
+     * @return курс пересчета минимальных единиц, {@link #RATE_PRECISION} значащих цифр
+     * @throws IllegalArgumentException - если курса одной из валют нет в таблице
+     */
+    public BigDecimal getMinorUnitRate(Currency from, Currency to) {
+        int fromIndex = index(from);
+        int toIndex = index(to);
+        return BigDecimal.valueOf(pairRates[fromIndex][toIndex], pairScales[fromIndex][toIndex]);
+    }
+
+    /**
+     * Перевод суммы в другую валюту по курсу таблицы.
+     * @param money - денежная сумма
+     * @param currency - валюта результата
+     * @param roundingMode - округление до минимальной единицы валюты результата
+     * @return денежная сумма в валюте {@code currency}
+     * @throws IllegalArgumentException - если курса одной из валют нет в таблице
+     * @throws ArithmeticException - если результат не помещается в long
+     */
+    public FastMoney convert(FastMoney money, Currency currency, RoundingMode roundingMode) {
+        if (money.getCurrency().equals(currency)) {
+            return money;
+        }
+        int from = index(money.getCurrency());
+        int to = index(currency);
+        long minorUnits = money.getMinorUnits();
+        long pairRate = pairRates[from][to];
+        int pairScale = pairScales[from][to];
+
+        if (minorUnits != Long.MIN_VALUE && Math.abs(minorUnits) <= fastLimits[from][to]) {
+            return FastMoney.ofMinor(FastMoney.divide(minorUnits * pairRate, POWERS_OF_TEN[pairScale], roundingMode), currency);
+        }
+        BigDecimal converted = new BigDecimal(BigInteger.valueOf(minorUnits).multiply(BigInteger.valueOf(pairRate)), pairScale);
+        return FastMoney.ofMinor(converted.setScale(0, roundingMode).longValueExact(), currency);
+    }
+
+    /**
+     * Перевод суммы в другую валюту с банковским округлением.
+     * @param money - денежная сумма
+     * @param currency - валюта результата
+     * @return денежная сумма в валюте {@code currency}
+     */
+    public FastMoney convert(FastMoney money, Currency currency) {
+        return convert(money, currency, RoundingMode.HALF_EVEN);
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeRateTable{base=" + baseCurrency + ", rates=" + rates + ", loadedAt=" + loadedAt + "}";
+    }
+
+    private int index(Currency currency) {
+        Integer index = indexes.get(currency);
+        if (index == null) {
+            throw new IllegalArgumentException("No exchange rate for " + currency);
+        }
+        return index;
+    }
+
+    /**
+     * Курс пересчета минимальных единиц: from / to * 10^(scaleTo - scaleFrom) с {@link #RATE_PRECISION}
+     * значащими цифрами, без незначащих нулей и с неотрицательным числом знаков после запятой.
+     */
+    private static BigDecimal pairRate(BigDecimal fromRate, int fromScale, BigDecimal toRate, int toScale) {
+        BigDecimal rate = fromRate
+                .movePointRight(toScale - fromScale)
+                .divide(toRate, RATE_CONTEXT)
+                .stripTrailingZeros();
+        return rate.scale() < 0 ? rate.setScale(0) : rate;
+    }
+
+    private static int scale(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+}
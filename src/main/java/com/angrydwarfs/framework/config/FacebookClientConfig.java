@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.config;
+
+import com.angrydwarfs.framework.service.client.FacebookClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Настройки клиента Facebook Graph API.
+ * @version 0.001
+ * @author habatoo
+ */
+@Configuration
+public class FacebookClientConfig {
+    @Value("${dwarfsframework.app.facebookGraphUrl:https://graph.facebook.com}")
+    private String graphUrl;
+
+    @Value("${dwarfsframework.app.facebookConnectTimeoutMs:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${dwarfsframework.app.facebookReadTimeoutMs:5000}")
+    private int readTimeoutMs;
+
+    @Value("${dwarfsframework.app.facebookMaxConnections:20}")
+    private int maxConnections;
+
+    @Value("${dwarfsframework.app.facebookQueueSize:200}")
+    private int queueSize;
+
+    @Value("${dwarfsframework.app.facebookUserCacheTtlMs:60000}")
+    private long userCacheTtlMs;
+
+    @Value("${dwarfsframework.app.facebookUserCacheSize:10000}")
+    private int userCacheSize;
+
+    @Bean
+    public FacebookClient facebookClient(MeterRegistry meterRegistry) {
+        return new FacebookClient(graphUrl, connectTimeoutMs, readTimeoutMs, maxConnections, queueSize,
+                userCacheTtlMs, userCacheSize, meterRegistry);
+    }
+}
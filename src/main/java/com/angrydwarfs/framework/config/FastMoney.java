@@ -0,0 +1,365 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.config;
+
+import com.angrydwarfs.framework.exceptions.IllegalMoneyFormatException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Денежная сумма в целых минимальных единицах валюты (копейках, центах) - без BigDecimal и разбора строк
+ * при вычислениях. Операции принимают {@link FastMoney} и long, результат округляется только при делении,
+ * с явно заданным режимом округления - {@link RoundingMode#HALF_EVEN} (банковское) или {@link RoundingMode#DOWN}.
+ * Переполнение long приводит к {@link ArithmeticException}, операции над разными валютами - к {@link IllegalArgumentException}.
+ * Суммы, средние и распределение по большим наборам - {@link MoneySummary} и {@link #allocate(long...)}.
+ * @param "minorUnits" - денежная сумма в минимальных единицах валюты
+ * @param "currency" - валюта денежной суммы - по умолчанию RUB
+ */
+public final class FastMoney implements Comparable<FastMoney> {
+    private static final Currency CURRENCY = Currency.getInstance("RUB");
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private FastMoney(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    /**
+     * @param minorUnits - сумма в минимальных единицах валюты
+     * @param currency - валюта
+     * @return денежная сумма
+     */
+    public static FastMoney ofMinor(long minorUnits, Currency currency) {
+        return new FastMoney(minorUnits, currency);
+    }
+
+    /**
+     * @param minorUnits - сумма в копейках
+     * @return денежная сумма в рублях
+     */
+    public static FastMoney ofMinor(long minorUnits) {
+        return new FastMoney(minorUnits, CURRENCY);
+    }
+
+    /**
+     * Разбор строки вида ddd...d.dd, знаки после точки сверх точности валюты отбрасываются - как в {@link Money#getValue()}.
+     * @param strValue - строковое значение денежной суммы
+     * @param currency - валюта
+     * @return денежная сумма
+     * @throws IllegalMoneyFormatException - если строка не число с разделителем точка или значение отрицательное
+     */
+    public static FastMoney of(String strValue, Currency currency) throws IllegalMoneyFormatException {
+        int scale = scale(currency);
+        int length = strValue.length();
+        int index = 0;
+        if (length > 0 && strValue.charAt(0) == '-') {
+            if (isNumeric(strValue, 1)) {
+                throw new IllegalMoneyFormatException("Данные '" + strValue + "' содержат отрицательные значения.", strValue);
+            }
+            index = length;
+        }
+        if (!isNumeric(strValue, index)) {
+            throw new IllegalMoneyFormatException("Данные '" + strValue + "' содержат не числовые значения, \n либо разделитель чисел не точка!", strValue);
+        }
+
+        try {
+            long units = 0;
+            int fractionDigits = -1;
+            for (; index < length; index++) {
+                char c = strValue.charAt(index);
+                if (c == '.') {
+                    fractionDigits = 0;
+                    continue;
+                }
+                if (fractionDigits >= 0) {
+                    if (fractionDigits == scale) {
+                        continue;
+                    }
+                    fractionDigits++;
+                }
+                units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            }
+            int missing = scale - Math.max(fractionDigits, 0);
+            return new FastMoney(Math.multiplyExact(units, POWERS_OF_TEN[missing]), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalMoneyFormatException("Данные '" + strValue + "' превышают допустимую денежную сумму.", strValue);
+        }
+    }
+
+    /**
+     * Разбор строки в рублях.
+     * @param strValue - строковое значение денежной суммы
+     * @return денежная сумма
+     * @throws IllegalMoneyFormatException - если строка не число с разделителем точка или значение отрицательное
+     */
+    public static FastMoney of(String strValue) throws IllegalMoneyFormatException {
+        return of(strValue, CURRENCY);
+    }
+
+    /**
+     * @param value - денежная сумма
+     * @param currency - валюта
+     * @param roundingMode - округление до точности валюты
+     * @return денежная сумма
+     */
+    public static FastMoney of(BigDecimal value, Currency currency, RoundingMode roundingMode) {
+        return new FastMoney(value.setScale(scale(currency), roundingMode).unscaledValue().longValueExact(), currency);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return сумма с количеством знаков после запятой по точности валюты
+     */
+    public BigDecimal getValue() {
+        return BigDecimal.valueOf(minorUnits, scale(currency));
+    }
+
+    public FastMoney plus(FastMoney other) {
+        return new FastMoney(Math.addExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    public FastMoney plusMinor(long otherMinorUnits) {
+        return new FastMoney(Math.addExact(minorUnits, otherMinorUnits), currency);
+    }
+
+    public FastMoney minus(FastMoney other) {
+        return new FastMoney(Math.subtractExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    public FastMoney minusMinor(long otherMinorUnits) {
+        return new FastMoney(Math.subtractExact(minorUnits, otherMinorUnits), currency);
+    }
+
+    public FastMoney multipliedBy(long multiplier) {
+        return new FastMoney(Math.multiplyExact(minorUnits, multiplier), currency);
+    }
+
+    /**
+     * Деление на целое число с округлением до минимальной единицы валюты.
+     * @param divisor - делитель
+     * @param roundingMode - режим округления
+     * @return частное
+     * @throws ArithmeticException - при делении на ноль, переполнении (Long.MIN_VALUE / -1)
+     * или при {@link RoundingMode#UNNECESSARY} и ненулевом остатке
+     */
+    public FastMoney dividedBy(long divisor, RoundingMode roundingMode) {
+        return new FastMoney(divide(minorUnits, divisor, roundingMode), currency);
+    }
+
+    /**
+     * Умножение на дробь numerator / denominator с одним округлением результата, например на ставку
+     * или курс в целых единицах с фиксированным знаменателем.
+     * @param numerator - числитель множителя
+     * @param denominator - знаменатель множителя
+     * @param roundingMode - режим округления
+     * @return произведение
+     */
+    public FastMoney multipliedBy(long numerator, long denominator, RoundingMode roundingMode) {
+        return new FastMoney(divide(Math.multiplyExact(minorUnits, numerator), denominator, roundingMode), currency);
+    }
+
+    /**
+     * Делит сумму на {@code parts} частей, отличающихся не более чем на одну минимальную единицу валюты -
+     * остаток от деления распределяется по одной единице на первые части. Сумма частей равна исходной сумме.
+     * @param parts - количество частей
+     * @return части суммы
+     */
+    public FastMoney[] allocate(int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Number of parts must be positive: " + parts);
+        }
+        long share = minorUnits / parts;
+        long remainder = minorUnits % parts;
+        long step = Long.signum(remainder);
+        FastMoney[] result = new FastMoney[parts];
+        for (int i = 0; i < parts; i++) {
+            result[i] = new FastMoney(i < Math.abs(remainder) ? share + step : share, currency);
+        }
+        return result;
+    }
+
+    /**
+     * Делит сумму пропорционально весам, части округляются к нулю, остаток распределяется по одной
+     * минимальной единице на первые части. Сумма частей равна исходной сумме.
+     * @param ratios - неотрицательные веса частей, хотя бы один больше нуля
+     * @return части суммы в порядке весов
+     */
+    public FastMoney[] allocate(long... ratios) {
+        long total = 0;
+        for (long ratio : ratios) {
+            if (ratio < 0) {
+                throw new IllegalArgumentException("Ratios must not be negative");
+            }
+            total = Math.addExact(total, ratio);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one ratio must be positive");
+        }
+
+        long[] shares = new long[ratios.length];
+        long remainder = minorUnits;
+        for (int i = 0; i < ratios.length; i++) {
+            shares[i] = divide(Math.multiplyExact(minorUnits, ratios[i]), total, RoundingMode.DOWN);
+            remainder -= shares[i];
+        }
+        long step = Long.signum(remainder);
+        for (int i = 0; remainder != 0; i++) {
+            if (ratios[i] > 0) {
+                shares[i] += step;
+                remainder -= step;
+            }
+        }
+
+        FastMoney[] result = new FastMoney[ratios.length];
+        for (int i = 0; i < ratios.length; i++) {
+            result[i] = new FastMoney(shares[i], currency);
+        }
+        return result;
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    @Override
+    public int compareTo(FastMoney other) {
+        return Long.compare(minorUnits, sameCurrency(other).minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FastMoney)) {
+            return false;
+        }
+        FastMoney other = (FastMoney) o;
+        return minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getValue().toPlainString() + " " + currency;
+    }
+
+    /**
+     * Целочисленное деление с округлением по правилам {@link RoundingMode} без BigDecimal.
+     * @param dividend - делимое
+     * @param divisor - делитель
+     * @param roundingMode - режим округления
+     * @return округленное частное
+     */
+    static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        if (divisor == -1) {
+            // Long.MIN_VALUE / -1 в long молча дает Long.MIN_VALUE
+            return Math.negateExact(dividend);
+        }
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        int signum = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        boolean increment;
+        switch (roundingMode) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            case DOWN:
+                increment = false;
+                break;
+            case UP:
+                increment = true;
+                break;
+            case FLOOR:
+                increment = signum < 0;
+                break;
+            case CEILING:
+                increment = signum > 0;
+                break;
+            default:
+                // сравнение остатка с половиной делителя в отрицательных числах - модуль Long.MIN_VALUE
+                // не помещается в long, отрицательные значения остатка и делителя переполнения не дают
+                long negativeRemainder = remainder < 0 ? remainder : -remainder;
+                long negativeDivisor = divisor < 0 ? divisor : -divisor;
+                long halfDifference = negativeRemainder - (negativeDivisor - negativeRemainder);
+                if (halfDifference == 0) {
+                    increment = roundingMode == RoundingMode.HALF_UP
+                            || (roundingMode == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+                } else {
+                    increment = halfDifference < 0;
+                }
+                break;
+        }
+        return increment ? quotient + signum : quotient;
+    }
+
+    private FastMoney sameCurrency(FastMoney other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+        return other;
+    }
+
+    private static int scale(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * Проверка формата ddd...d.dd без регулярного выражения.
+     */
+    private static boolean isNumeric(String strValue, int from) {
+        int length = strValue.length();
+        int digits = 0;
+        boolean point = false;
+        for (int i = from; i < length; i++) {
+            char c = strValue.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !point && digits > 0) {
+                point = true;
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+        return digits > 0;
+    }
+}
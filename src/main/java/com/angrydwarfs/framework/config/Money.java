@@ -19,6 +19,7 @@ package com.angrydwarfs.framework.config;
 import com.angrydwarfs.framework.exceptions.IllegalMoneyFormatException;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Currency;
 
 /**
@@ -135,6 +136,19 @@ public class Money {
         return newValue;
     }
 
+    /**
+     * Перевод денежной суммы в другую валюту по таблице курсов, с банковским округлением до точности валюты.
+     * @param currency - валюта результата
+     * @param rates - таблица курсов валют
+     * @return новое значение денежной суммы в валюте {@code currency}
+     * @throws IllegalMoneyFormatException исключение в случае невозможности привести строку денежной суммы в формат денег
+     * @throws IllegalArgumentException - если курса одной из валют нет в таблице
+     */
+    public Money convertTo(Currency currency, ExchangeRateTable rates) throws IllegalMoneyFormatException {
+        FastMoney converted = rates.convert(FastMoney.of(getValue(), this.currency, RoundingMode.DOWN), currency, RoundingMode.HALF_EVEN);
+        return new Money(converted.getValue().toPlainString(), currency);
+    }
+
     @Override
     public String toString() {
         return this.value.toString() + " " + this.currency.toString();
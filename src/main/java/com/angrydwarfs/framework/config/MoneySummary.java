@@ -0,0 +1,211 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.config;
+
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+/**
+ * Накопитель сумм в одной валюте для отчетов - количество, сумма, минимум и максимум в минимальных единицах валюты.
+ * Сумма хранится в двух long - старшие и младшие 32 бита слагаемых, поэтому сложение не переполняется
+ * до 2^31 слагаемых и не требует проверки на каждом шаге, переполнение итоговой суммы проверяется при ее получении.
+ * Накопители объединяются через {@link #combine(MoneySummary)} - для параллельных потоков.
+ * Не потокобезопасен, как {@link java.util.LongSummaryStatistics}.
+ * @param "currency" - валюта сумм
+ */
+public class MoneySummary implements Consumer<FastMoney>, LongConsumer {
+    /** Массивы короче этого размера суммируются в одном потоке. */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final Currency currency;
+    private long count;
+    private long high;
+    private long low;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public MoneySummary(Currency currency) {
+        this.currency = currency;
+    }
+
+    /**
+     * Сумма массива в одном потоке - цикл без ветвлений, который JIT может векторизовать.
+     * @param minorUnits - суммы в минимальных единицах валюты
+     * @param currency - валюта
+     * @return накопитель с итогами
+     */
+    public static MoneySummary of(long[] minorUnits, Currency currency) {
+        MoneySummary summary = new MoneySummary(currency);
+        summary.acceptAll(minorUnits, 0, minorUnits.length);
+        return summary;
+    }
+
+    /**
+     * Сумма массива в общем пуле ForkJoinPool, массив делится на части по {@link #PARALLEL_THRESHOLD} элементов.
+     * @param minorUnits - суммы в минимальных единицах валюты
+     * @param currency - валюта
+     * @return накопитель с итогами
+     */
+    public static MoneySummary ofParallel(long[] minorUnits, Currency currency) {
+        if (minorUnits.length < PARALLEL_THRESHOLD) {
+            return of(minorUnits, currency);
+        }
+        int chunks = (minorUnits.length + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .collect(() -> new MoneySummary(currency),
+                        (summary, chunk) -> summary.acceptAll(minorUnits, chunk * PARALLEL_THRESHOLD,
+                                Math.min(minorUnits.length, (chunk + 1) * PARALLEL_THRESHOLD)),
+                        MoneySummary::combine);
+    }
+
+    /**
+     * Коллектор для потоков {@link FastMoney}, в том числе параллельных.
+     * @param currency - валюта сумм, сумма в другой валюте приводит к {@link IllegalArgumentException}
+     * @return коллектор
+     */
+    public static Collector<FastMoney, ?, MoneySummary> collector(Currency currency) {
+        return Collector.of(() -> new MoneySummary(currency), MoneySummary::accept, (left, right) -> {
+            left.combine(right);
+            return left;
+        });
+    }
+
+    /**
+     * @param money - сумма в валюте накопителя
+     */
+    @Override
+    public void accept(FastMoney money) {
+        if (!currency.equals(money.getCurrency())) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + money.getCurrency());
+        }
+        accept(money.getMinorUnits());
+    }
+
+    /**
+     * @param minorUnits - сумма в минимальных единицах валюты накопителя
+     */
+    @Override
+    public void accept(long minorUnits) {
+        count++;
+        high += minorUnits >> 32;
+        low += minorUnits & 0xFFFFFFFFL;
+        min = Math.min(min, minorUnits);
+        max = Math.max(max, minorUnits);
+    }
+
+    /**
+     * Добавляет в накопитель итоги другого накопителя той же валюты.
+     * @param other - накопитель
+     */
+    public void combine(MoneySummary other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+        count += other.count;
+        high += other.high;
+        // младшие части неотрицательны, их сумма может выйти за 63 бита - перенос в старшую часть
+        high += (low >>> 32) + (other.low >>> 32);
+        low = (low & 0xFFFFFFFFL) + (other.low & 0xFFFFFFFFL);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return сумма
+     * @throws ArithmeticException - если сумма не помещается в long
+     */
+    public FastMoney getSum() {
+        return FastMoney.ofMinor(sumMinorUnits(), currency);
+    }
+
+    /**
+     * @param roundingMode - округление до минимальной единицы валюты
+     * @return средняя сумма, ноль - если сумм нет
+     * @throws ArithmeticException - если сумма не помещается в long
+     */
+    public FastMoney getAverage(RoundingMode roundingMode) {
+        return count == 0
+                ? FastMoney.ofMinor(0, currency)
+                : FastMoney.ofMinor(FastMoney.divide(sumMinorUnits(), count, roundingMode), currency);
+    }
+
+    /**
+     * @return наименьшая сумма, null - если сумм нет
+     */
+    public FastMoney getMin() {
+        return count == 0 ? null : FastMoney.ofMinor(min, currency);
+    }
+
+    /**
+     * @return наибольшая сумма, null - если сумм нет
+     */
+    public FastMoney getMax() {
+        return count == 0 ? null : FastMoney.ofMinor(max, currency);
+    }
+
+    @Override
+    public String toString() {
+        return "MoneySummary{count=" + count + ", sum=" + getSum() + ", min=" + getMin() + ", max=" + getMax() + "}";
+    }
+
+    private void acceptAll(long[] minorUnits, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        long chunkHigh = 0;
+        long chunkLow = 0;
+        for (int i = from; i < to; i++) {
+            long value = minorUnits[i];
+            chunkHigh += value >> 32;
+            chunkLow += value & 0xFFFFFFFFL;
+        }
+        long chunkMin = Long.MAX_VALUE;
+        long chunkMax = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            chunkMin = Math.min(chunkMin, minorUnits[i]);
+            chunkMax = Math.max(chunkMax, minorUnits[i]);
+        }
+
+        MoneySummary chunk = new MoneySummary(currency);
+        chunk.count = to - from;
+        chunk.high = chunkHigh;
+        chunk.low = chunkLow;
+        chunk.min = chunkMin;
+        chunk.max = chunkMax;
+        combine(chunk);
+    }
+
+    /**
+     * high * 2^32 + low с проверкой переполнения.
+     */
+    private long sumMinorUnits() {
+        long carriedHigh = Math.addExact(high, low >>> 32);
+        return Math.addExact(Math.multiplyExact(carriedHigh, 1L << 32), low & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.config;
+
+import com.angrydwarfs.framework.service.ImageStorageService;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.servlet.MultipartConfigElement;
+
+/**
+ * Настройки загрузки файлов. Загружаемые файлы сохраняются во временный каталог хранилища изображений
+ * по абсолютному пути - относительный путь контейнер сервлетов разрешает от своего временного каталога,
+ * а не от {@code upload.path}.
+ * @version 0.001
+ * @author habatoo
+ */
+@Configuration
+public class MultipartConfig {
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties multipartProperties,
+                                                         ImageStorageService imageStorageService) {
+        multipartProperties.setLocation(imageStorageService.getTemporaryDirectory().toString());
+        return multipartProperties.createMultipartConfig();
+    }
+}
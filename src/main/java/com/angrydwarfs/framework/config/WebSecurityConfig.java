@@ -20,8 +20,11 @@ import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.jwt.AuthEntryPointJwt;
 import com.angrydwarfs.framework.security.jwt.AuthTokenFilter;
+import com.angrydwarfs.framework.security.services.BoundedPasswordEncoder;
 import com.angrydwarfs.framework.security.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
@@ -85,6 +88,21 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${dwarfsframework.app.passwordStrength:10}")
+    private int passwordStrength;
+
+    @Value("${dwarfsframework.app.passwordHashThreads:4}")
+    private int passwordHashThreads;
+
+    @Value("${dwarfsframework.app.passwordHashQueueSize:64}")
+    private int passwordHashQueueSize;
+
+    @Value("${dwarfsframework.app.passwordRehashOnLogin:false}")
+    private boolean passwordRehashOnLogin;
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -92,7 +110,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Override
     public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
-        authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
+        authenticationManagerBuilder.userDetailsService(userDetailsService)
+                .passwordEncoder(passwordEncoder())
+                .userDetailsPasswordManager(userDetailsService);
     }
 
     //@Bean(BeanIds.AUTHENTICATION_MANAGER)
@@ -102,9 +122,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         return super.authenticationManagerBean();
     }
 
+    /**
+     * BCrypt с работой в ограниченном пуле потоков, при переполнении пула запросы получают ответ 503.
+     * При passwordRehashOnLogin пароли, закодированные с меньшим passwordStrength, перехэшируются при входе.
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(passwordStrength),
+                passwordHashThreads,
+                passwordHashQueueSize,
+                passwordRehashOnLogin,
+                meterRegistry);
     }
 
 
@@ -140,7 +169,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/auth/register").permitAll()
                 .antMatchers(HttpMethod.POST, "/api/auth/login").permitAll()
-                .antMatchers(HttpMethod.POST, "/api/auth/social").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/auth/social/**").permitAll()
                 .antMatchers(HttpMethod.POST, "/users").anonymous()
                 .anyRequest().authenticated();
     }
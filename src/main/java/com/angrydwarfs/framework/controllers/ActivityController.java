@@ -23,13 +23,22 @@ import com.angrydwarfs.framework.models.Enums.ESubRole;
 import com.angrydwarfs.framework.models.Enums.ETag;
 import com.angrydwarfs.framework.payload.request.ActivityRequest;
 import com.angrydwarfs.framework.payload.request.SignupRequest;
+import com.angrydwarfs.framework.payload.response.ActivityResponse;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
 import com.angrydwarfs.framework.repository.*;
 import com.angrydwarfs.framework.security.jwt.UserUtils;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
+import com.angrydwarfs.framework.service.ReferenceDataRegistry;
+import com.angrydwarfs.framework.service.ActivityImportService;
+import com.angrydwarfs.framework.service.ActivityService;
+import com.angrydwarfs.framework.service.ActivityTagIndex;
+import com.angrydwarfs.framework.service.GeoBox;
+import com.angrydwarfs.framework.service.TimelineService;
 import com.fasterxml.jackson.annotation.JsonView;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -38,6 +47,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -50,6 +60,11 @@ import java.util.*;
 @RestController
 @RequestMapping("/api/auth/users/activities")
 public class ActivityController {
+    private static final int DEFAULT_FEED_SIZE = 20;
+    private static final int MAX_FEED_SIZE = 100;
+    private static final double DEFAULT_NEARBY_RADIUS = 5000;
+    private static final double MAX_NEARBY_RADIUS = 100000;
+
     @Value("${dwarfsframework.app.remoteAddr}")
     private String remoteAddr;
 
@@ -74,12 +89,27 @@ public class ActivityController {
     @Autowired
     TagRepository tagRepository;
 
+    @Autowired
+    ReferenceDataRegistry referenceData;
+
     @Autowired
     PasswordEncoder encoder;
 
     @Autowired
     UserUtils userUtils;
 
+    @Autowired
+    ActivityService activityService;
+
+    @Autowired
+    TimelineService timelineService;
+
+    @Autowired
+    ActivityTagIndex activityTagIndex;
+
+    @Autowired
+    ActivityImportService activityImportService;
+
     /**
      * @method userActivityList - при http GET запросе по адресу .../api/auth/users/activity
      * @return {@code List<activities>} - список всех активностей пользователя с данными пользователя.
@@ -90,14 +120,180 @@ public class ActivityController {
     @JsonView(Views.UserShortData.class)
     public ResponseEntity<?> userActivityList(Authentication authentication) {
 
-        Optional optionalUser = userRepository.findByUsername(authentication.getName());
-        if(!optionalUser.isPresent()) {
+        User user = userRepository.getOne(UserDetailsImpl.currentUserId(authentication));
+        return ResponseEntity.ok(activityRepository.findByUserActivities(user));
+    }
+
+    /**
+     * @method userActivityFeed - при http GET запросе по адресу .../api/auth/users/activities/feed?cursor=&limit=20
+     * @param cursor - курсор предыдущей страницы (nextCursor), пусто - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_FEED_SIZE}
+     * @return {@code PageResponse<ActivityResponse>} - страница activity пользователя по убыванию даты создания
+     * с именами тэгов, nextCursor - курсор следующей страницы.
+     * @see ActivityResponse
+     */
+    @GetMapping("/feed")
+    @ResponseBody
+    public ResponseEntity<?> userActivityFeed(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_FEED_SIZE) int limit,
+            Authentication authentication) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_SIZE));
+        try {
+            return ResponseEntity.ok(activityService.findFeed(UserDetailsImpl.currentUserId(authentication), cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: invalid cursor!"));
+        }
+    }
+
+    /**
+     * @method searchActivities - при http GET запросе по адресу .../api/auth/users/activities/search?query=&tags=&cursor=&limit=20
+     * @param query - строка поиска по заголовку и описанию activity
+     * @param tags - тэги фильтра, activity должно иметь все тэги, пусто - без фильтра
+     * @param cursor - курсор предыдущей страницы (nextCursor), пусто - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_FEED_SIZE}
+     * @return {@code PageResponse<ActivityResponse>} - страница activity по убыванию релевантности,
+     * nextCursor - курсор следующей страницы.
+     * @see ActivityService
+     */
+    @GetMapping("/search")
+    @ResponseBody
+    public ResponseEntity<?> searchActivities(
+            @RequestParam(value = "query", required = false) String query,
+            @RequestParam(value = "tags", required = false) List<ETag> tags,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_FEED_SIZE) int limit) {
+
+        if (query == null || query.trim().isEmpty()) {
             return ResponseEntity
                     .badRequest()
-                    .body(new MessageResponse("Error: can not find user data."));
+                    .body(new MessageResponse("Error: search query is empty!"));
         }
 
-        return ResponseEntity.ok(activityRepository.findByUserActivities(userRepository.findByUsername(authentication.getName()).get()));
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_SIZE));
+        try {
+            return ResponseEntity.ok(activityService.search(query, tags, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: invalid cursor!"));
+        }
+    }
+
+    /**
+     * @method tagActivities - при http GET запросе по адресу .../api/auth/users/activities/tags?tags=&match=all&cursor=&limit=20
+     * @param tags - тэги запроса
+     * @param match - all - activity со всеми тэгами, any - с любым из тэгов
+     * @param cursor - курсор предыдущей страницы (nextCursor), пусто - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_FEED_SIZE}
+     * @return {@code PageResponse<ActivityResponse>} - страница activity по убыванию id, nextCursor - курсор следующей страницы.
+     * @see ActivityTagIndex
+     */
+    @GetMapping("/tags")
+    @ResponseBody
+    public ResponseEntity<?> tagActivities(
+            @RequestParam(value = "tags", required = false) List<ETag> tags,
+            @RequestParam(value = "match", defaultValue = "all") String match,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_FEED_SIZE) int limit) {
+
+        if (tags == null || tags.isEmpty() || !("all".equals(match) || "any".equals(match))) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: tags and match=all|any are required!"));
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_SIZE));
+        try {
+            return ResponseEntity.ok(activityService.findByTags(tags, "any".equals(match), cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: invalid cursor!"));
+        }
+    }
+
+    /**
+     * @method tagCounts - при http GET запросе по адресу .../api/auth/users/activities/tags/counts
+     * @return {@code Map<ETag, Integer>} - количество activity по каждому тэгу.
+     * @see ActivityTagIndex
+     */
+    @GetMapping("/tags/counts")
+    @ResponseBody
+    public ResponseEntity<?> tagCounts() {
+        return ResponseEntity.ok(activityTagIndex.counts());
+    }
+
+    /**
+     * @method nearbyActivities - при http GET запросе по адресу
+     * .../api/auth/users/activities/nearby?lat=&lon=&radius=&cursor=&limit=20 - поиск в радиусе от точки
+     * или .../api/auth/users/activities/nearby?minLat=&minLon=&maxLat=&maxLon=&cursor=&limit=20 - поиск в прямоугольной области
+     * @param radius - радиус в метрах, не более {@value #MAX_NEARBY_RADIUS}
+     * @param cursor - курсор предыдущей страницы (nextCursor), пусто - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_FEED_SIZE}
+     * @return {@code PageResponse<NearbyActivityResponse>} - страница activity по возрастанию расстояния
+     * (в области - по убыванию id), nextCursor - курсор следующей страницы.
+     * @see GeoBox
+     */
+    @GetMapping("/nearby")
+    @ResponseBody
+    public ResponseEntity<?> nearbyActivities(
+            @RequestParam(value = "lat", required = false) Double latitude,
+            @RequestParam(value = "lon", required = false) Double longitude,
+            @RequestParam(value = "radius", defaultValue = "" + DEFAULT_NEARBY_RADIUS) double radius,
+            @RequestParam(value = "minLat", required = false) Double minLatitude,
+            @RequestParam(value = "minLon", required = false) Double minLongitude,
+            @RequestParam(value = "maxLat", required = false) Double maxLatitude,
+            @RequestParam(value = "maxLon", required = false) Double maxLongitude,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_FEED_SIZE) int limit) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_SIZE));
+        try {
+            if (latitude != null && longitude != null) {
+                return ResponseEntity.ok(activityService.findNearby(
+                        latitude, longitude, Math.min(radius, MAX_NEARBY_RADIUS), cursor, pageSize));
+            }
+            if (minLatitude != null && minLongitude != null && maxLatitude != null && maxLongitude != null) {
+                return ResponseEntity.ok(activityService.findInBox(
+                        GeoBox.of(minLatitude, minLongitude, maxLatitude, maxLongitude), cursor, pageSize));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: invalid coordinates or cursor!"));
+        }
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse("Error: point or bounding box is required!"));
+    }
+
+    /**
+     * @method userTimeline - при http GET запросе по адресу .../api/auth/users/activities/timeline?cursor=&limit=20
+     * @param cursor - курсор предыдущей страницы (nextCursor), пусто - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_FEED_SIZE}
+     * @return {@code PageResponse<ActivityResponse>} - страница activity каналов, на которые подписан пользователь,
+     * по убыванию даты создания, nextCursor - курсор следующей страницы.
+     * @see TimelineService
+     */
+    @GetMapping("/timeline")
+    @ResponseBody
+    public ResponseEntity<?> userTimeline(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_FEED_SIZE) int limit,
+            Authentication authentication) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_SIZE));
+        try {
+            return ResponseEntity.ok(timelineService.findTimeline(UserDetailsImpl.currentUserId(authentication), cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: invalid cursor!"));
+        }
     }
 
     /**
@@ -124,17 +320,24 @@ public class ActivityController {
             @Valid @RequestBody ActivityRequest activityRequest,
             Authentication authentication) {
 
-        User user = userRepository.findByUsername(authentication.getName()).get();
+        User user = userRepository.getOne(UserDetailsImpl.currentUserId(authentication));
         Activity activity = new Activity(activityRequest.getActivityTitle(), activityRequest.getActivityBody(), user);
-        activity.setCreationDate(activityRequest.getCreationDate());
+        if (activityRequest.getCreationDate() != null) {
+            activity.setCreationDate(activityRequest.getCreationDate());
+        }
+        activity.setLatitude(activityRequest.getLatitude());
+        activity.setLongitude(activityRequest.getLongitude());
 
         ////////////////////////////////// tags
         Set<Tag> tags = new HashSet<>();
+        Set<ETag> tagNames = EnumSet.noneOf(ETag.class);
         try {
             Set<String> strTags = activityRequest.getTags();
             if (strTags != null) {
                 for (String tag : strTags) {
-                    tags.add(tagRepository.findByTagName(ETag.valueOf(tag)).get());
+                    ETag tagName = ETag.valueOf(tag);
+                    tags.add(referenceData.tag(tagName));
+                    tagNames.add(tagName);
                 }
             }
             activity.setTags(tags);
@@ -143,10 +346,27 @@ public class ActivityController {
         }
         //////////////////////////////////
         activityRepository.save(activity);
+        activityTagIndex.put(activity.getId(), tagNames);
+        timelineService.fanOut(activity);
 
         return ResponseEntity.ok(new MessageResponse("Activity create successfully!"));
     }
 
+    /**
+     * Пакетная загрузка activity при POST запросе по адресу .../api/auth/users/activities/import
+     * тело запроса - JSON массив или NDJSON поток activity, автор activity - userId элемента или текущий пользователь.
+     * @param request - запрос с потоком activity
+     * @param authentication - текущий пользователь
+     * @return {@code ImportResponse} - количество загруженных activity и ошибки элементов с их номерами
+     * @see ActivityImportService
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, UserController.NDJSON_VALUE})
+    @PreAuthorize("hasRole('ROLE_ADMINISTRATOR')")
+    public ResponseEntity<?> importActivities(HttpServletRequest request, Authentication authentication) throws IOException {
+        Long userId = UserDetailsImpl.currentUserId(authentication);
+        return ResponseEntity.ok(activityImportService.importActivities(request.getInputStream(), userId));
+    }
+
     //TODO рефакторить повторение редактирования
     /**
      * Редактирование activity, доступно только автору activity и пользователям с ролью MOD, ADMIN
@@ -166,7 +386,7 @@ public class ActivityController {
         // check ID current user = ID edit user
         if(!(authentication.getName().equals(activityFromDb.getUserActivities().getUsername()))) {
             // admin check
-            if(userRepository.findByUsername(authentication.getName()).get().getMainRoles().size() >= 3) {
+            if(userRepository.findAuthByUsername(authentication.getName()).get().getMainRoles().size() >= 3) {
                 //BeanUtils.copyProperties(activity, activityFromDb, "id");
                 activityFromDb.setActivityTitle(activity.getActivityTitle());
                 activityFromDb.setActivityDescription(activity.getActivityDescription());
@@ -199,9 +419,11 @@ public class ActivityController {
         // check ID current user = ID edit user
         if(!(authentication.getName().equals(activity.getUserActivities().getUsername()))) {
             // admin check
-            if(userRepository.findByUsername(authentication.getName()).get().getMainRoles().size() >= 3) {
+            if(userRepository.findAuthByUsername(authentication.getName()).get().getMainRoles().size() >= 3) {
                 try {
+                    timelineService.removeActivity(activity.getId());
                     activityRepository.delete(activity);
+                    activityTagIndex.remove(activity.getId());
                     return ResponseEntity.ok(new MessageResponse("Activity was deleted successfully!"));
                 } catch (Exception e) {
                     return ResponseEntity
@@ -214,7 +436,9 @@ public class ActivityController {
                     .body(new MessageResponse("You can delete only yourself data!"));
         } else {
             try {
+                timelineService.removeActivity(activity.getId());
                 activityRepository.delete(activity);
+                activityTagIndex.remove(activity.getId());
                 return ResponseEntity.ok(new MessageResponse("Activity was deleted successfully!"));
             } catch (Exception e) {
                 return ResponseEntity
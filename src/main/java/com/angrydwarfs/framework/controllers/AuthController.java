@@ -26,9 +26,12 @@ import com.angrydwarfs.framework.payload.request.SignupRequest;
 import com.angrydwarfs.framework.payload.response.JwtResponse;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
 import com.angrydwarfs.framework.repository.*;
+import com.angrydwarfs.framework.security.jwt.JwtClaims;
+import com.angrydwarfs.framework.security.jwt.TokenRevocationCache;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
 import com.angrydwarfs.framework.security.jwt.UserUtils;
 import com.angrydwarfs.framework.service.FacebookService;
+import com.angrydwarfs.framework.service.ReferenceDataRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -56,13 +59,7 @@ public class AuthController {
     UserRepository userRepository;
 
     @Autowired
-    MainRoleRepository mainRoleRepository;
-
-    @Autowired
-    SubRoleRepository subRoleRepository;
-
-    @Autowired
-    StatusRepository statusRepository;
+    ReferenceDataRegistry referenceData;
 
     @Autowired
     TokenRepository tokenRepository;
@@ -70,6 +67,9 @@ public class AuthController {
     @Autowired
     TokenUtils tokenUtils;
 
+    @Autowired
+    TokenRevocationCache tokenRevocationCache;
+
     @Autowired
     PasswordEncoder encoder;
 
@@ -125,27 +125,23 @@ public class AuthController {
         Set<MainRole> roles = new HashSet<>();
 
         if (strRoles == null) {
-            MainRole userRole = mainRoleRepository.findByMainRoleName(EMainRole.ROLE_USER)
-                    .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+            MainRole userRole = referenceData.mainRole(EMainRole.ROLE_USER);
             roles.add(userRole);
         } else {
             strRoles.forEach(role -> {
                 switch (role) {
                     case "admin":
-                        MainRole adminRole = mainRoleRepository.findByMainRoleName(EMainRole.ROLE_ADMINISTRATOR)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+                        MainRole adminRole = referenceData.mainRole(EMainRole.ROLE_ADMINISTRATOR);
                         roles.add(adminRole);
                         break;
 
                     case "mod":
-                        MainRole modRole = mainRoleRepository.findByMainRoleName(EMainRole.ROLE_MODERATOR)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+                        MainRole modRole = referenceData.mainRole(EMainRole.ROLE_MODERATOR);
                         roles.add(modRole);
                         break;
 
                     default:
-                        MainRole userRole = mainRoleRepository.findByMainRoleName(EMainRole.ROLE_USER)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+                        MainRole userRole = referenceData.mainRole(EMainRole.ROLE_USER);
                         roles.add(userRole);
                 }
             });
@@ -153,12 +149,12 @@ public class AuthController {
 
         user.setMainRoles(roles);
         Set<SubRole> subRoleSet = new HashSet<>();
-        subRoleSet.add(subRoleRepository.findBySubRoleName(ESubRole.COMMON_USER).get());
+        subRoleSet.add(referenceData.subRole(ESubRole.COMMON_USER));
         user.setSubRoles(subRoleSet);
         user.setCreationDate(LocalDateTime.now());
 
         Set<Status> statusSet = new HashSet<>();
-        statusSet.add(statusRepository.findByUserStatus(EStatus.COMMON).get());
+        statusSet.add(referenceData.status(EStatus.COMMON));
         user.setUserStatus(statusSet);
         user.setStatusStartDate(LocalDateTime.now());
         user.setStatusEndDate(null);
@@ -178,10 +174,7 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
         JwtResponse jwtResponse = tokenUtils.makeAuth(loginRequest.getUserName(), loginRequest.getPassword());
-        tokenUtils.makeToken(loginRequest.getUserName(), jwtResponse.getToken());
-        User user = userRepository.findByUsername(loginRequest.getUserName()).get();
-        user.setLastVisitedDate(LocalDateTime.now());
-        userRepository.save(user);
+        tokenUtils.recordLogin(jwtResponse);
         return ResponseEntity.ok(jwtResponse);
     }
 
@@ -195,12 +188,13 @@ public class AuthController {
     @GetMapping("/logout")
     @PreAuthorize("hasRole('ROLE_MODERATOR') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_USER')")
     public ResponseEntity<?> logoutUser(HttpServletRequest request) {
-        String headerAuth = request.getHeader("Authorization");
-        String jwt = headerAuth.substring(7, headerAuth.length());
+        JwtClaims claims = (JwtClaims) request.getAttribute(JwtClaims.REQUEST_ATTRIBUTE);
+        String jwt = claims.getToken();
 
         Token unActiveToken = tokenRepository.findByToken(jwt);
         unActiveToken.setActive(false);
         tokenRepository.save(unActiveToken);
+        tokenRevocationCache.remember(unActiveToken);
 
         return ResponseEntity
                 .badRequest()
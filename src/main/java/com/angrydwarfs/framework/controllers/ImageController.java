@@ -13,96 +13,289 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.angrydwarfs.framework.controllers;
 
 import com.angrydwarfs.framework.models.Activity;
-import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.payload.response.ImagePurgeResponse;
+import com.angrydwarfs.framework.payload.response.ImageResponse;
+import com.angrydwarfs.framework.payload.response.MessageResponse;
 import com.angrydwarfs.framework.repository.ActivityRepository;
-import com.angrydwarfs.framework.repository.TokenRepository;
 import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
+import com.angrydwarfs.framework.service.ImageCleanupService;
+import com.angrydwarfs.framework.service.ImageStorageService;
+import com.angrydwarfs.framework.service.ImageStorageService.StoredImage;
+import com.angrydwarfs.framework.service.ImageVariantService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
-import java.util.UUID;
-
 
-// TODO file size control, tests
 /**
  * Контроллер работы с изображениями.
+ * Загрузка - multipart запрос, размер и тип файла проверяются {@link ImageStorageService},
+ * одинаковые файлы хранятся один раз под именем по хэшу содержимого.
+ * После загрузки в фоне создаются уменьшенные копии {@link ImageVariantService}, параметр size при выдаче
+ * выбирает копию нужного размера.
+ * Выдача - с заголовками ETag, Last-Modified, Cache-Control и поддержкой одного диапазона Range.
+ * На Tomcat файл отдается через sendfile, иначе копируется через {@link FileChannel#transferTo}.
  * @version 0.001
  * @author habatoo
  */
 @RestController
 @RequestMapping("/api/auth/img")
 public class ImageController {
-
-    //@Value("${upload.path}")
-    private String path = "/home/habatoo/IdeaProjects/Dwarfs_Framework/";
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+    private static final String CACHE_CONTROL_PENDING = "private, no-cache";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     private final UserRepository userRepository;
     private final ActivityRepository activityRepository;
+    private final ImageStorageService imageStorageService;
+    private final ImageCleanupService imageCleanupService;
+    private final ImageVariantService imageVariantService;
 
     @Autowired
     public ImageController(
             UserRepository userRepository,
-            ActivityRepository activityRepository
+            ActivityRepository activityRepository,
+            ImageStorageService imageStorageService,
+            ImageCleanupService imageCleanupService,
+            ImageVariantService imageVariantService
     ) {
         this.userRepository = userRepository;
         this.activityRepository = activityRepository;
+        this.imageStorageService = imageStorageService;
+        this.imageCleanupService = imageCleanupService;
+        this.imageVariantService = imageVariantService;
     }
 
-    private String fileUpload(MultipartFile file) throws IOException {
-        if (file != null && !file.getOriginalFilename().isEmpty()) {
-            File uploadDir = new File(path);
+    @PostMapping("/avatar")
+    public ResponseEntity<?> addAvatar(
+            Authentication authentication,
+            @RequestParam("file") MultipartFile file
+    ) {
+        String resultFilename = imageStorageService.store(file);
+        userRepository.updateAvatarFileName(UserDetailsImpl.currentUserId(authentication), resultFilename);
+        imageVariantService.submit(resultFilename);
+
+        return ResponseEntity.ok(new ImageResponse(resultFilename));
+    }
+
+    @PostMapping("/image")
+    public ResponseEntity<?> addActivityImage(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("id") Activity activity
+    ) {
+        String resultFilename = imageStorageService.store(file);
+        activity.setActivityFileName(resultFilename);
+        activityRepository.save(activity);
+        imageVariantService.submit(resultFilename);
+
+        return ResponseEntity.ok(new ImageResponse(resultFilename));
+    }
 
-            if (!uploadDir.exists()) {
-                uploadDir.mkdir();
+    /**
+     * Выдача изображения при GET и HEAD запросе по адресу .../api/auth/img/{fileName}
+     * @param fileName - имя файла в хранилище
+     * @param size - наибольшая сторона изображения в пикселях, если не задан - отдается исходный файл.
+     * Пока копия нужного размера не создана, отдается исходный файл без долгого кэширования.
+     * Если копии этого размера не будет, исходный файл кэшируется так же, как копия.
+     */
+    @GetMapping("/{fileName:.+}")
+    public void getImage(@PathVariable("fileName") String fileName,
+                         @RequestParam(value = "size", required = false) Integer size,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<StoredImage> found = imageStorageService.find(fileName);
+        if (!found.isPresent()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        StoredImage image = found.get();
+        String cacheControl = CACHE_CONTROL;
+        if (size != null && size > 0) {
+            Optional<StoredImage> variant = imageVariantService.find(image, size);
+            if (variant.isPresent()) {
+                image = variant.get();
+            } else {
+                cacheControl = CACHE_CONTROL_PENDING;
             }
+        }
+        String etag = image.getETag();
 
-            String uuidFile = UUID.randomUUID().toString();
-            String resultFilename = uuidFile + "." + file.getOriginalFilename();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.getLastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            file.transferTo(new File(path + "/" + resultFilename));
-            return resultFilename;
+        if (isNotModified(request, etag, image.getLastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = image.getSize();
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isRangeApplicable(request, etag, image.getLastModified())) {
+            long[] bounds = parseRange(range, length);
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(image.getContentType());
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
 
-        } else { return null; }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, output);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
     }
 
-    @PostMapping("/avatar")
-    public void addAvatar(
-            Authentication authentication,
-            @RequestParam("file") MultipartFile file
-    ) throws IOException {
-        User user = userRepository.findByUsername(authentication.getName()).get();
-        String resultFilename;
+    /**
+     * Удаление изображений без ссылок при http DELETE запросе по адресу .../api/auth/img/unused,
+     * та же очистка выполняется в фоне по расписанию.
+     * @return {@code ResponseEntity.ok} - количество и объем удаленных файлов и время очистки.
+     * @return {@code ResponseEntity.badRequest - Error: Can't read image data!} - ошибка при чтении ссылок или файлов.
+     */
+    @DeleteMapping("/unused")
+    @PreAuthorize("hasRole('ROLE_ADMINISTRATOR')")
+    public ResponseEntity<?> clearUnusedImages() {
+        try {
+            ImagePurgeResponse result = imageCleanupService.purgeUnreferencedImages();
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: Can't read image data!"));
+        }
+    }
 
-        resultFilename = fileUpload(file);
-        if (resultFilename != null) {
-            user.setAvatarFileName(resultFilename);
+    /**
+     * If-None-Match имеет приоритет над If-Modified-Since.
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, etag);
         }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
 
-        userRepository.save(user);
+    /**
+     * Диапазон применяется, если If-Range не задан или совпадает с текущей версией файла.
+     */
+    private static boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
     }
 
-    @PostMapping("/image")
-    public void addActivityImage(
-            @RequestParam("file") MultipartFile file,
-            @RequestParam("id") Activity activity
-    ) throws IOException {
-        String resultFilename;
+    private static boolean matchesETag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        resultFilename = fileUpload(file);
-        if (resultFilename != null) {
-            activity.setActivityFileName(resultFilename);
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
         }
+    }
 
-        activityRepository.save(activity);
+    /**
+     * Разбор заголовка Range с одним диапазоном байт.
+     * @return [start, end] включительно, пустой массив - диапазон вне файла,
+     * null - заголовок не разобран или задано несколько диапазонов, отдается весь файл
+     */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+                if (end < start) {
+                    return start >= length ? new long[0] : null;
+                }
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
@@ -31,6 +31,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Контроллер доступа через социальные сети.
@@ -78,16 +79,15 @@ public class SocialNetController {
     /**
      * @method authenticateUser - при http post запросе по адресу .../api/auth/login
      * @param facebookLoginRequest - запрос на доступ с параметрами пользователя facebook по facebook Id.
-     * возвращает
+     * возвращает ответ асинхронно - поток сервера освобождается на время запроса к Facebook.
      * @return {@code ResponseEntity ответ}
      * @see FacebookLoginRequest
      */
     @PostMapping("/facebook")
-    public ResponseEntity<?> facebookAuth(@Valid @RequestBody FacebookLoginRequest facebookLoginRequest) {
+    public CompletableFuture<ResponseEntity<?>> facebookAuth(@Valid @RequestBody FacebookLoginRequest facebookLoginRequest) {
         //log.info("facebook login {}", facebookLoginRequest);
-        JwtResponse jwtResponse = facebookService.loginUser(facebookLoginRequest.getAccessToken());
-
-        return ResponseEntity.ok(jwtResponse);
+        return facebookService.loginUser(facebookLoginRequest.getAccessToken())
+                .thenApply(jwtResponse -> ResponseEntity.ok(jwtResponse));
     }
 
     /**
@@ -18,15 +18,18 @@ package com.angrydwarfs.framework.controllers;
 
 import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
+import com.angrydwarfs.framework.payload.response.PageResponse;
+import com.angrydwarfs.framework.payload.response.UserShortResponse;
 import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
 import com.angrydwarfs.framework.service.SubscriptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -37,6 +40,9 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/api/auth/subscription")
 public class SubscriptionController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final SubscriptionService subscriptionService;
     private final UserRepository userRepository;
 
@@ -49,41 +55,93 @@ public class SubscriptionController {
 
     /**
      * getUser - при http GET запросе по адресу .../api/auth/subscription/{id}
-     * @return - пользователь
-     * @param user
+     * @return - пользователь с подписками и подписчиками
+     * @param id - id пользователя
      */
     @GetMapping("{id}")
     @ResponseBody
     @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
     //@JsonView(Views.FullProfile.class)
-    public User getUser(@PathVariable("id") User user) {
-        return user;
+    public ResponseEntity<?> getUser(@PathVariable("id") Long id) {
+        Optional<User> user = userRepository.findWithSubscriptionsById(id);
+        if (!user.isPresent()) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: can not find user data."));
+        }
+        return ResponseEntity.ok(user.get());
     }
 
     /**
-     * changeSubscription - при http POST запросе по адресу .../api/auth/change-subscription/{channelId}
+     * changeSubscription - при http POST запросе по адресу .../api/auth/subscription/change-subscription/{channelId}
      * @param authentication - пользователь кто подписывается
-     * @param channel - пользователь на кого подписываются
-     * @return - возвращает измененный статус подписки пользователя
+     * @param channelId - id пользователя на кого подписываются
+     * @return {@code SubscriptionResponse} - новый статус подписки и количество подписчиков пользователя
      */
     @PostMapping("change-subscription/{channelId}")
     @ResponseBody
     @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
-    //@JsonView(Views.FullProfile.class)
-    public User changeSubscription(
+    public ResponseEntity<?> changeSubscription(
             Authentication authentication,
-            //@AuthenticationPrincipal User subscriber,
-            @PathVariable("channelId") User channel
+            @PathVariable("channelId") Long channelId
     ) {
-        Optional optionalUser = userRepository.findByUsername(authentication.getName());
-        if (optionalUser.isPresent()) {
-            if (optionalUser.get().equals(channel)) {
-                return channel;
-            } else {
-                return subscriptionService.changeSubscription(channel, (User)optionalUser.get());
-            }
-        } else {
-            return channel;
+        Long userId = UserDetailsImpl.currentUserId(authentication);
+        if (!userRepository.existsById(channelId)) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: can not find user data."));
         }
+        if (userId.equals(channelId)) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: you can not subscribe to yourself!"));
+        }
+
+        return ResponseEntity.ok(subscriptionService.changeSubscription(channelId, userId));
+    }
+
+    /**
+     * subscribers - при http GET запросе по адресу .../api/auth/subscription/{id}/subscribers?afterId=0&limit=50
+     * @param id - id пользователя
+     * @param afterId - id последнего подписчика предыдущей страницы (курсор), 0 - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_PAGE_SIZE}
+     * @return {@code PageResponse<UserShortResponse>} - страница подписчиков пользователя
+     */
+    @GetMapping("{id}/subscribers")
+    @ResponseBody
+    @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
+    public ResponseEntity<?> subscribers(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = pageSize(limit);
+        return ResponseEntity.ok(page(subscriptionService.findSubscribers(id, afterId, pageSize), pageSize));
+    }
+
+    /**
+     * subscriptions - при http GET запросе по адресу .../api/auth/subscription/{id}/subscriptions?afterId=0&limit=50
+     * @param id - id пользователя
+     * @param afterId - id последней подписки предыдущей страницы (курсор), 0 - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_PAGE_SIZE}
+     * @return {@code PageResponse<UserShortResponse>} - страница пользователей, на которых подписан пользователь
+     */
+    @GetMapping("{id}/subscriptions")
+    @ResponseBody
+    @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
+    public ResponseEntity<?> subscriptions(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = pageSize(limit);
+        return ResponseEntity.ok(page(subscriptionService.findSubscriptions(id, afterId, pageSize), pageSize));
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static PageResponse<UserShortResponse> page(List<UserShortResponse> users, int pageSize) {
+        String nextCursor = users.size() < pageSize ? null : String.valueOf(users.get(users.size() - 1).getId());
+        return new PageResponse<>(users, nextCursor);
     }
 }
@@ -25,6 +25,7 @@ import com.angrydwarfs.framework.payload.request.UserEditRequest;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
 import com.angrydwarfs.framework.repository.*;
 import com.angrydwarfs.framework.security.jwt.UserUtils;
+import com.angrydwarfs.framework.service.ReferenceDataRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -63,6 +64,9 @@ public class TagController {
     @Autowired
     TagRepository tagRepository;
 
+    @Autowired
+    ReferenceDataRegistry referenceData;
+
     @Autowired
     LevelRepository levelRepository;
 
@@ -93,8 +97,8 @@ public class TagController {
         Set<String> strTags = userEditRequest.getTags();
         if (strTags != null) {
             for (String tag : strTags) {
-                Tag tempTag = tagRepository.findByTagName(ETag.valueOf(tag)).get();
-                tempTag.setTagLevel(levelRepository.findByLevelName(ELevel.FIRST_LEVEL).get());
+                Tag tempTag = referenceData.tag(ETag.valueOf(tag));
+                tempTag.setTagLevel(referenceData.level(ELevel.FIRST_LEVEL));
                 tags.add(tempTag);
             }
         }
@@ -122,7 +126,7 @@ public class TagController {
         Set<Tag> tags = new HashSet<>();
 
         try {
-            Tag tempTag = tagRepository.findByTagName(ETag.valueOf(tagName)).get();
+            Tag tempTag = referenceData.tag(ETag.valueOf(tagName));
             tempTag.setTagLevel(levelRepository.findById(Integer.parseInt(tagLevel)).get());
             tags.add(tempTag);
             user.setTags(tags);
@@ -143,14 +147,14 @@ public class TagController {
         User user = userRepository.findByUsername(username).get();
 
         try {
-            Tag tempTag = tagRepository.findByTagName(ETag.valueOf(tagName)).get();
+            Tag tempTag = referenceData.tag(ETag.valueOf(tagName));
             Set<Tag> tags = user.getTags();
             user.setTags(new HashSet<>());
             Set<Tag> newTags = new HashSet<>();
 
             if (tags != null) {
                 for (Tag tag : tags) {
-                    if (!tag.equals(tagRepository.findByTagName(ETag.valueOf(tagName)).get())) {
+                    if (!tag.equals(referenceData.tag(ETag.valueOf(tagName)))) {
                         newTags.add(tempTag);
                     }
                 }
@@ -23,16 +23,31 @@ import com.angrydwarfs.framework.models.Enums.ETag;
 import com.angrydwarfs.framework.payload.request.SignupRequest;
 import com.angrydwarfs.framework.payload.request.UserEditRequest;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
+import com.angrydwarfs.framework.payload.response.PageResponse;
+import com.angrydwarfs.framework.payload.response.TokenPurgeResponse;
+import com.angrydwarfs.framework.payload.response.UserSummaryResponse;
 import com.angrydwarfs.framework.repository.*;
+import com.angrydwarfs.framework.security.jwt.TokenUtils;
 import com.angrydwarfs.framework.security.jwt.UserUtils;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
+import com.angrydwarfs.framework.security.services.UserDetailsServiceImpl;
+import com.angrydwarfs.framework.service.ActivityTagIndex;
+import com.angrydwarfs.framework.service.ReferenceDataRegistry;
+import com.angrydwarfs.framework.service.SubscriptionService;
+import com.angrydwarfs.framework.service.TokenCleanupService;
+import com.angrydwarfs.framework.service.UserService;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
@@ -48,6 +63,11 @@ import java.util.*;
 @RestController
 @RequestMapping("/api/auth/users")
 public class UserController {
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     @Value("${dwarfsframework.app.remoteAddr}")
     private String remoteAddr;
 
@@ -77,29 +97,84 @@ public class UserController {
     @Autowired
     UserUtils userUtils;
 
+    @Autowired
+    TokenUtils tokenUtils;
+
+    @Autowired
+    TokenCleanupService tokenCleanupService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    SubscriptionService subscriptionService;
+
+    @Autowired
+    ReferenceDataRegistry referenceData;
+
+    @Autowired
+    ActivityRepository activityRepository;
+
+    @Autowired
+    ActivityTagIndex activityTagIndex;
+
     /**
-     * @method userList - при http GET запросе по адресу .../api/auth/users
-     * @return {@code List<user>} - список всех пользователей с полными данными пользователей.
-     * @see User
-     * @see com.angrydwarfs.framework.models.MainRole
+     * @method userList - при http GET запросе по адресу .../api/auth/users?afterId=0&limit=50
+     * @param afterId - id последнего пользователя предыдущей страницы (курсор), 0 - для первой страницы
+     * @param limit - размер страницы, не более {@value #MAX_PAGE_SIZE}
+     * @return {@code PageResponse<UserSummaryResponse>} - страница пользователей с id, именем, email, датой создания и ролями,
+     * nextCursor - курсор следующей страницы.
+     * @see UserSummaryResponse
      */
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
     @ResponseBody
-    public ResponseEntity<?> userList() {
-        List<Object> usersReturn = new ArrayList<>();
-        List<User> usersCurrent = userRepository.findAll();
-        for(User user: usersCurrent) {
-            Map<String, Object> temp = new HashMap<String, Object>();
-            temp.put("roles", user.getMainRoles());
-            temp.put("creationDate", user.getCreationDate());
-            temp.put("userEmail", user.getUserEmail());
-            temp.put("userName", user.getUsername());
-            temp.put("id", user.getId());
-            usersReturn.add(temp);
-        }
+    public ResponseEntity<?> userList(
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<UserSummaryResponse> users = userService.findUserSummaries(afterId, pageSize);
+        String nextCursor = users.size() < pageSize ? null : String.valueOf(users.get(users.size() - 1).getId());
 
-        return ResponseEntity.ok(usersReturn);
+        return ResponseEntity.ok(new PageResponse<>(users, nextCursor));
+    }
+
+    /**
+     * @method exportUsers - при http GET запросе по адресу .../api/auth/users/export
+     * выгрузка всех пользователей в формате NDJSON - по одному пользователю на строку.
+     * Пользователи читаются страницами по {@value #EXPORT_PAGE_SIZE}, память не зависит от количества пользователей.
+     * @return {@code StreamingResponseBody} - поток кратких данных пользователей.
+     * @see UserSummaryResponse
+     */
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    @PreAuthorize("hasRole('ROLE_ADMINISTRATOR')")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writerFor(UserSummaryResponse.class)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                long afterId = 0;
+                List<UserSummaryResponse> users;
+                do {
+                    users = userService.findUserSummaries(afterId, EXPORT_PAGE_SIZE);
+                    for (UserSummaryResponse user : users) {
+                        writer.write(user);
+                        afterId = user.getId();
+                    }
+                    writer.flush();
+                } while (users.size() == EXPORT_PAGE_SIZE);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
     }
 
     /**
@@ -113,7 +188,7 @@ public class UserController {
     @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
     @ResponseBody
     public ResponseEntity<?>  getUserInfo(Authentication authentication) {
-        Optional optionalUser = userRepository.findByUsername(authentication.getName());
+        Optional optionalUser = userRepository.findProfileByUsername(authentication.getName());
         if(optionalUser.isPresent()) {
             return ResponseEntity.ok(optionalUser.get());
         }
@@ -140,9 +215,9 @@ public class UserController {
 
         userFromDb = userRepository.findById(userFromDb.getId()).get();
         // check ID current user = ID edit user
-        if(!(userFromDb.getId() == userRepository.findByUsername(authentication.getName()).get().getId())) {
+        if(!userFromDb.getId().equals(UserDetailsImpl.currentUserId(authentication))) {
             // admin check
-            if(userRepository.findByUsername(authentication.getName()).get().getMainRoles().size() == 3) {
+            if(userRepository.findAuthByUsername(authentication.getName()).get().getMainRoles().size() == 3) {
                 return userUtils.checkUserNameAndEmail(user, userFromDb);
             }
             return ResponseEntity
@@ -157,6 +232,7 @@ public class UserController {
     /**
      * @method deleteUser - при http DELETE запросе по адресу .../api/auth/users/{id}
      * {id} - входные данные - id пользователя, данные которого удаляются.
+     * activity пользователя удаляются вместе с ним и убираются из индекса тэгов.
      * @param user - обьект пользователя для удаления.
      * @see UserRepository
      */
@@ -164,7 +240,14 @@ public class UserController {
     @PreAuthorize("hasRole('ROLE_ADMINISTRATOR') or hasRole('ROLE_MODERATOR')")
     public ResponseEntity<?> deleteUser(@PathVariable("id") User user) {
         try {
+            tokenUtils.revokeUserTokens(user);
+            userDetailsService.evict(user.getUsername());
+            subscriptionService.removeAllSubscriptions(user.getId());
+            List<Long> activityIds = activityRepository.findIdsByUserId(user.getId());
             userRepository.delete(user);
+            for (Long activityId : activityIds) {
+                activityTagIndex.remove(activityId);
+            }
             return ResponseEntity.ok(new MessageResponse("User was deleted successfully!"));
         } catch (Exception e) {
             return ResponseEntity
@@ -173,39 +256,42 @@ public class UserController {
         }
     }
 
+    /**
+     * @method refreshReferenceData - при http POST запросе по адресу .../api/auth/users/reference/refresh
+     * перечитывает справочники ролей, статусов, тэгов и уровней после их изменения в БД.
+     * @return {@code ResponseEntity.ok - Reference data was refreshed successfully!}
+     * @see ReferenceDataRegistry
+     */
+    @PostMapping("/reference/refresh")
+    @PreAuthorize("hasRole('ROLE_ADMINISTRATOR')")
+    public ResponseEntity<?> refreshReferenceData() {
+        referenceData.refresh();
+        return ResponseEntity.ok(new MessageResponse("Reference data was refreshed successfully!"));
+    }
+
     /**
      * @method clearTokens - при http DELETE запросе по адресу .../api/auth/users/tokens - очищает базу от токенов с истекшим сроком
+     * токены удаляются пакетами, та же очистка выполняется в фоне по расписанию.
      * @return {@code ResponseEntity.badRequest - All tokens have valid expiry date!} - если все токены имеют не истекший срок действия.
      * @return {@code ResponseEntity.badRequest - Error: Can't read token data!} - ошибка при запросе к таблице token.
-     * @return {@code ResponseEntity.ok - Tokens with expiry date was deleted successfully!} - при успешном удалении токенов с истекшим сроком действия.
+     * @return {@code ResponseEntity.ok - Tokens with expiry date was deleted successfully!} - при успешном удалении токенов с истекшим сроком действия,
+     * с количеством удаленных токенов и временем очистки.
      */
     @DeleteMapping("/tokens")
     @PreAuthorize("hasRole('ROLE_ADMINISTRATOR')")
     public ResponseEntity<?> clearTokens() {
-
         try {
-            List<Token> tokens = tokenRepository.findByExpiryDateBefore(LocalDateTime.now());
-            if(tokens.isEmpty()) {
+            TokenPurgeResponse result = tokenCleanupService.purgeExpiredTokens();
+            if (result.getPurged() == 0) {
                 return ResponseEntity
                         .badRequest()
-                        .body(new MessageResponse("All tokens have valid expiry date!"));
+                        .body(result);
             }
-            else {
-                for (Token token : tokens) {
-                    try { tokenRepository.deleteById(token.getId()); } catch (Exception e) {
-                        return ResponseEntity
-                                .badRequest()
-                                .body(new MessageResponse("Error: Can't delete token!"));
-                    }
-                }
-                return ResponseEntity.ok(new MessageResponse("Tokens with expiry date was deleted successfully!"));
-            }
-
+            return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity
                     .badRequest()
                     .body(new MessageResponse("Error: Can't read token data!"));
         }
-
     }
 }
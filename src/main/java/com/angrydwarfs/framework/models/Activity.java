@@ -17,14 +17,15 @@
 package com.angrydwarfs.framework.models;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import lombok.*;
-import org.hibernate.annotations.OnDelete;
-import org.hibernate.annotations.OnDeleteAction;
 
 import javax.persistence.*;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotBlank;
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -57,7 +58,9 @@ import java.util.UUID;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "ACTIVITY")
+@Table(name = "ACTIVITY", indexes = {
+        @Index(name = "IDX_ACTIVITY_USER_FEED", columnList = "ACTIVITY_USER_ID, ACTIVITY_CREATION_DATE, ACTIVITY_ID")
+})
 @ToString(of = {"id", "activityTitle", "activityBody", "creationDate", "activityCode"})
 @EqualsAndHashCode(of = {"id"})
 public class Activity implements Serializable {
@@ -84,12 +87,16 @@ public class Activity implements Serializable {
     private String activityDescription;
 
     @JsonView(Views.UserShortData.class)
+    @DecimalMin("-90")
+    @DecimalMax("90")
     @Column(name = "LATITUDE")
-    private String latitude;
+    private Double latitude;
 
     @JsonView(Views.UserShortData.class)
+    @DecimalMin("-180")
+    @DecimalMax("180")
     @Column(name = "LONGITUDE")
-    private String longitude ;
+    private Double longitude;
 
     @JsonView(Views.UserShortData.class)
     @Column(name = "ACTIVITY_ADDRESS")
@@ -97,7 +104,7 @@ public class Activity implements Serializable {
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     @JsonView(Views.UserShortData.class)
-    @Column(name = "ACTIVITY_CREATION_DATE", updatable = false)
+    @Column(name = "ACTIVITY_CREATION_DATE", nullable = false, updatable = false)
     private LocalDateTime creationDate;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
@@ -105,6 +112,12 @@ public class Activity implements Serializable {
     @Column(name = "DATE_OF_ACTIVITY", updatable = false)
     private LocalDateTime dateOfActivity;
 
+    // activity канала, копирование которой в ленты подписчиков пропущено, - читается в ленты при чтении, см. TimelineService
+    @JsonIgnore
+    @Column(name = "ACTIVITY_TIMELINE_PULL", columnDefinition = "boolean not null default false",
+            insertable = false, updatable = false)
+    private boolean timelinePull;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "ACTIVITY_USER_ID")
     @JsonView(Views.UserShortData.class)
@@ -115,9 +128,11 @@ public class Activity implements Serializable {
 //    @JoinColumn(name = "ACTIVITY_USER_PARTICIPANT_ID")
 //    private Set<User> userActivitiesParticipant = new HashSet<>();
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
-    @OnDelete(action = OnDeleteAction.CASCADE)
-    @JoinColumn(name = "ACTIVITY_TAG_ID")
+    @ManyToMany(fetch = FetchType.EAGER)
+    @JoinTable(name = "ACTIVITY_TAGS",
+            joinColumns = @JoinColumn(name = "ACTIVITY_ID"),
+            inverseJoinColumns = @JoinColumn(name = "TAG_ID"),
+            indexes = @Index(name = "IDX_ACTIVITY_TAGS_TAG", columnList = "TAG_ID, ACTIVITY_ID"))
     @JsonView(Views.UserShortData.class)
     private Set<Tag> tags = new HashSet<>();
 
@@ -131,6 +146,16 @@ public class Activity implements Serializable {
         this.userActivities = user;
     }
 
+    /**
+     * Дата создания обязательна - по ней строится keyset пагинация ленты activity.
+     */
+    @PrePersist
+    private void prePersist() {
+        if (creationDate == null) {
+            creationDate = LocalDateTime.now();
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Курс валюты к базовой валюте приложения. Записывается в БД в таблицу с имененм EXCHANGE_RATES.
+ * @version 0.001
+ * @author habatoo
+ *
+ * @param "currencyCode" - primary key таблицы - код валюты ISO 4217.
+ * @param "rate" - стоимость единицы валюты в единицах базовой валюты.
+ * @param "updatedAt" - дата обновления курса.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "EXCHANGE_RATES")
+@ToString(of = {"currencyCode", "rate", "updatedAt"})
+@EqualsAndHashCode(of = {"currencyCode"})
+public class ExchangeRate {
+    @Id
+    @Column(name = "CURRENCY_CODE", length = 3)
+    private String currencyCode;
+
+    @Column(name = "RATE", nullable = false, precision = 19, scale = 9)
+    private BigDecimal rate;
+
+    @Column(name = "UPDATED_AT")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    public ExchangeRate(String currencyCode, BigDecimal rate) {
+        this.currencyCode = currencyCode;
+        this.rate = rate;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -18,6 +18,8 @@ package com.angrydwarfs.framework.models;
 
 import com.angrydwarfs.framework.models.Enums.ELevel;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -33,6 +35,8 @@ import javax.persistence.*;
  * @see Tag (пользователи).
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
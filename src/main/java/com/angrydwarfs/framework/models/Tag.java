@@ -18,8 +18,11 @@ package com.angrydwarfs.framework.models;
 
 import com.angrydwarfs.framework.models.Enums.ETag;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -38,6 +41,8 @@ import java.util.Set;
  * @see Level (уровень).
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -58,6 +63,7 @@ public class Tag {
     private Level tagLevel;
 
     @ManyToMany(mappedBy = "tags")
+    @JsonIgnore
     private Set<User> userSet = new HashSet<>();
 
     public Tag(ETag tagName) {
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Запись домашней ленты пользователя - ссылка на activity канала, на который подписан пользователь.
+ * Записи добавляются при создании activity (fan-out on write), длина ленты каждого пользователя ограничена.
+ * @version 0.001
+ * @author habatoo
+ *
+ * @param "id" - primary key таблицы timeline.
+ * @param "userId" - id владельца ленты (подписчика).
+ * @param "activityId" - id activity.
+ * @param "activityDate" - дата создания activity, ключ сортировки ленты.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "TIMELINE", indexes = {
+        @Index(name = "IDX_TIMELINE_USER_DATE", columnList = "TIMELINE_USER_ID, TIMELINE_ACTIVITY_DATE, TIMELINE_ACTIVITY_ID"),
+        @Index(name = "IDX_TIMELINE_ACTIVITY", columnList = "TIMELINE_ACTIVITY_ID")
+})
+@ToString(of = {"id", "userId", "activityId", "activityDate"})
+@EqualsAndHashCode(of = {"id"})
+public class TimelineEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "TIMELINE_ID")
+    private Long id;
+
+    @Column(name = "TIMELINE_USER_ID", nullable = false)
+    private Long userId;
+
+    @Column(name = "TIMELINE_ACTIVITY_ID", nullable = false)
+    private Long activityId;
+
+    @Column(name = "TIMELINE_ACTIVITY_DATE", nullable = false)
+    private LocalDateTime activityDate;
+}
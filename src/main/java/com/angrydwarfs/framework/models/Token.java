@@ -34,7 +34,10 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "TOKENS")
+@Table(name = "TOKENS", indexes = {
+        @Index(name = "IDX_TOKENS_EXPIRY_DATE", columnList = "TOKEN_EXPIRY_DATE"),
+        @Index(name = "IDX_TOKENS_USER", columnList = "TOKEN_USER_ID")
+})
 @ToString(of = {"id", "token", "creationDate", "expiryDate", "active"})
 @EqualsAndHashCode(of = {"id"})
 public class Token {
@@ -43,7 +46,7 @@ public class Token {
     @Column(name = "TOKEN_ID")
     private Long id;
 
-    @Column(name = "TOKEN", nullable = false, unique = true, length = 500)
+    @Column(name = "TOKEN", nullable = false, unique = true, length = 2048)
     private String token;
 
     @Column(name = "TOKEN_CREATION_DATE", updatable = false)
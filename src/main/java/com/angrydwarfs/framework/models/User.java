@@ -50,18 +50,49 @@ import java.util.Set;
  * @see Token (токены пользователя).
  * @param "activities" - активности пользователя
  * @see Activity (активности пользователя).
+ * @param "subscribersCount" - количество подписчиков пользователя.
+ * @param "subscriptionsCount" - количество подписок пользователя.
  */
 @Entity
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = User.GRAPH_AUTH, attributeNodes = {
+                @NamedAttributeNode("mainRoles")
+        }),
+        @NamedEntityGraph(name = User.GRAPH_PROFILE, attributeNodes = {
+                @NamedAttributeNode("mainRoles"),
+                @NamedAttributeNode("subRoles"),
+                @NamedAttributeNode("userStatus"),
+                @NamedAttributeNode("tags")
+        }),
+        @NamedEntityGraph(name = User.GRAPH_ADMIN_LIST, attributeNodes = {
+                @NamedAttributeNode("mainRoles"),
+                @NamedAttributeNode("userStatus")
+        }),
+        @NamedEntityGraph(name = User.GRAPH_SUBSCRIPTION, attributeNodes = {
+                @NamedAttributeNode("subscriptions")
+        })
+})
 @Getter
 @Setter
 //@Builder
 @NoArgsConstructor
-@Table(name = "USR")
+@Table(name = "USR", uniqueConstraints = {
+        @UniqueConstraint(name = "UK_USR_SOCIAL_NET_ID", columnNames = "SOCIAL_NET_ID")
+})
 @ToString(of = {"id", "userName", "password", "userEmail", "creationDate", "activationStatus"})
 @EqualsAndHashCode(of = {"id"})
 public class User implements Serializable, UserDetails {
     private static final long serialVersionUID = -1399500801576919731L;
 
+    /** Роли - для проверки доступа и выдачи jwt токена. */
+    public static final String GRAPH_AUTH = "User.auth";
+    /** Роли, дополнительные роли, статусы и тэги - для профиля пользователя. */
+    public static final String GRAPH_PROFILE = "User.profile";
+    /** Роли и статусы - для списка пользователей администратора. */
+    public static final String GRAPH_ADMIN_LIST = "User.adminList";
+    /** Подписки, подписчики читаются отдельным запросом - без декартова произведения двух коллекций. */
+    public static final String GRAPH_SUBSCRIPTION = "User.subscription";
+
     @Id
     @Column(name="USER_ID")
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -123,7 +154,7 @@ public class User implements Serializable, UserDetails {
     private LocalDateTime statusEndDate;
     ////////////////////////////////////////////////////
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JsonIdentityReference
     @JsonIdentityInfo(
             generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -133,7 +164,7 @@ public class User implements Serializable, UserDetails {
             inverseJoinColumns = @JoinColumn(name = "MAIN_ROLE_ID"))
     private Set<MainRole> mainRoles = new HashSet<>();
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JsonIdentityReference
     @JsonIdentityInfo(
             generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -143,7 +174,7 @@ public class User implements Serializable, UserDetails {
         inverseJoinColumns = @JoinColumn(name = "SUB_ROLE_ID"))
     private Set<SubRole> subRoles = new HashSet<>();
 
-    @OneToMany(mappedBy = "userTokens", fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(mappedBy = "userTokens", fetch = FetchType.LAZY, orphanRemoval = true)
     @JsonIdentityReference
     @JsonIdentityInfo(
             generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -152,7 +183,7 @@ public class User implements Serializable, UserDetails {
     private Set<Token> tokens = new HashSet<>();
 
     // TODO список участников
-    @OneToMany(mappedBy = "userActivities", fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(mappedBy = "userActivities", fetch = FetchType.LAZY, orphanRemoval = true)
     @JsonIdentityReference
     @JsonIdentityInfo(
             generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -161,7 +192,7 @@ public class User implements Serializable, UserDetails {
     @Column(name="USER_ACTIVITIES")
     private Set<Activity> activities = new HashSet<>();
 
-    @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.EAGER)
+    @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
     @JsonIdentityReference
     @JsonIdentityInfo(
             generator = ObjectIdGenerators.PropertyGenerator.class,
@@ -183,7 +214,7 @@ public class User implements Serializable, UserDetails {
             inverseJoinColumns = @JoinColumn(name = "channel_id")
     )
     //@JsonView(Views.FullProfile.class)
-    @JsonIdentityReference
+    @JsonIdentityReference(alwaysAsId = true)
     @JsonIdentityInfo(
             property = "id",
             generator = ObjectIdGenerators.PropertyGenerator.class
@@ -197,13 +228,20 @@ public class User implements Serializable, UserDetails {
             inverseJoinColumns = @JoinColumn(name = "subscriber_id")
     )
     //@JsonView(Views.FullProfile.class)
-    @JsonIdentityReference
+    @JsonIdentityReference(alwaysAsId = true)
     @JsonIdentityInfo(
             property = "id",
             generator = ObjectIdGenerators.PropertyGenerator.class
     )
     private Set<User> subscribers = new HashSet<>();
 
+    // Счетчики строк user_subscriptions, изменяются вместе с подпиской в SubscriptionService
+    @Column(name="USER_SUBSCRIBERS_COUNT", columnDefinition = "bigint not null default 0", insertable = false, updatable = false)
+    private long subscribersCount;
+
+    @Column(name="USER_SUBSCRIPTIONS_COUNT", columnDefinition = "bigint not null default 0", insertable = false, updatable = false)
+    private long subscriptionsCount;
+
     //////////////////////////////
 //    private Profile userProfile;
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Краткие данные activity для ленты - проекция без загрузки пользователя и сущностей тэгов.
+ * @param "id" - id activity.
+ * @param "activityTitle" - заголовок activity.
+ * @param "activityDescription" - описание activity.
+ * @param "creationDate" - дата создания activity.
+ * @param "tags" - имена тэгов activity.
+ */
+@Getter
+@Setter
+public class ActivityResponse {
+    private Long id;
+    private String activityTitle;
+    private String activityDescription;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime creationDate;
+
+    private List<String> tags;
+
+    public ActivityResponse(Long id, String activityTitle, String activityDescription, LocalDateTime creationDate, List<String> tags) {
+        this.id = id;
+        this.activityTitle = activityTitle;
+        this.activityDescription = activityDescription;
+        this.creationDate = creationDate;
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Результат очистки хранилища изображений от файлов без ссылок.
+ * @param "message" - сообщение о результате.
+ * @param "purged" - количество удаленных файлов.
+ * @param "freedBytes" - объем удаленных файлов в байтах.
+ * @param "elapsedMs" - время очистки в мс.
+ */
+@Getter
+@Setter
+public class ImagePurgeResponse {
+    private String message;
+    private long purged;
+    private long freedBytes;
+    private long elapsedMs;
+
+    public ImagePurgeResponse(String message, long purged, long freedBytes, long elapsedMs) {
+        this.message = message;
+        this.purged = purged;
+        this.freedBytes = freedBytes;
+        this.elapsedMs = elapsedMs;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Результат пакетной загрузки.
+ * @param "imported" - количество загруженных элементов.
+ * @param "failed" - количество элементов с ошибками.
+ * @param "errors" - ошибки элементов с номером элемента во входном потоке, сохраняются первые {@code maxErrors} ошибок.
+ */
+@Getter
+@Setter
+public class ImportResponse {
+    private long imported;
+    private long failed;
+    private List<ItemError> errors = new ArrayList<>();
+
+    @JsonIgnore
+    private final int maxErrors;
+
+    public ImportResponse(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(long index, String message) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new ItemError(index, message));
+        }
+    }
+
+    /**
+     * Ошибка элемента пакетной загрузки.
+     */
+    @Getter
+    @Setter
+    public static class ItemError {
+        private long index;
+        private String message;
+
+        public ItemError(long index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+    }
+}
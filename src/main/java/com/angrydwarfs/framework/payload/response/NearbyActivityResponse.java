@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Данные activity для поиска по координатам.
+ * @param "latitude" - широта activity.
+ * @param "longitude" - долгота activity.
+ * @param "distance" - расстояние до центра поиска в метрах, null - для поиска в прямоугольной области.
+ */
+@Getter
+@Setter
+public class NearbyActivityResponse extends ActivityResponse {
+    private Double latitude;
+    private Double longitude;
+    private Double distance;
+
+    public NearbyActivityResponse(Long id, String activityTitle, String activityDescription, LocalDateTime creationDate,
+                                  List<String> tags, Double latitude, Double longitude, Double distance) {
+        super(id, activityTitle, activityDescription, creationDate, tags);
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.distance = distance;
+    }
+}
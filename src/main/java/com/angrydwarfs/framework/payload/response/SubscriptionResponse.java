@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Результат изменения подписки.
+ * @param "channelId" - id пользователя, на которого подписываются.
+ * @param "subscribed" - true - подписка оформлена, false - подписка отменена.
+ * @param "subscribersCount" - количество подписчиков пользователя после изменения.
+ */
+@Getter
+@Setter
+public class SubscriptionResponse {
+    private Long channelId;
+    private boolean subscribed;
+    private long subscribersCount;
+
+    public SubscriptionResponse(Long channelId, boolean subscribed, long subscribersCount) {
+        this.channelId = channelId;
+        this.subscribed = subscribed;
+        this.subscribersCount = subscribersCount;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Результат очистки таблицы TOKENS от токенов с истекшим сроком действия.
+ * @param "message" - сообщение о результате.
+ * @param "purged" - количество удаленных токенов.
+ * @param "elapsedMs" - время очистки в мс.
+ */
+@Getter
+@Setter
+public class TokenPurgeResponse {
+    private String message;
+    private long purged;
+    private long elapsedMs;
+
+    public TokenPurgeResponse(String message, long purged, long elapsedMs) {
+        this.message = message;
+        this.purged = purged;
+        this.elapsedMs = elapsedMs;
+    }
+}
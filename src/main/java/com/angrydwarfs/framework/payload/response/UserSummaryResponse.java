@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Краткие данные пользователя для списка пользователей - проекция без загрузки связей пользователя.
+ * @param "id" - id пользователя.
+ * @param "userName" - имя пользователя.
+ * @param "userEmail" - email пользователя.
+ * @param "creationDate" - дата создания пользователя.
+ * @param "roles" - имена ролей пользователя.
+ */
+@Getter
+@Setter
+public class UserSummaryResponse {
+    private Long id;
+    private String userName;
+    private String userEmail;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime creationDate;
+
+    private List<String> roles = new ArrayList<>();
+
+    public UserSummaryResponse(Long id, String userName, String userEmail, LocalDateTime creationDate) {
+        this.id = id;
+        this.userName = userName;
+        this.userEmail = userEmail;
+        this.creationDate = creationDate;
+    }
+}
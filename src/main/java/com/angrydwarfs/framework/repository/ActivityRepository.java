@@ -20,14 +20,142 @@ import com.angrydwarfs.framework.models.Activity;
 import com.angrydwarfs.framework.models.Tag;
 import com.angrydwarfs.framework.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ActivityRepository extends JpaRepository<Activity, Long> {
+    /**
+     * Поисковый документ activity - заголовок и описание. Выражение совпадает с выражением
+     * GIN индекса idx_activity_search из data-postgres.sql, иначе индекс не используется.
+     * Конфигурация russian приводит русские слова к основе русским стеммером, а слова латиницей - английским.
+     */
+    String SEARCH_DOCUMENT = "to_tsvector('russian', coalesce(a.activity_title, '') || ' ' || coalesce(a.activity_description, ''))";
+    String SEARCH_QUERY = "plainto_tsquery('russian', :query)";
+
+    /**
+     * Точка activity. Выражение совпадает с выражением GiST индекса idx_activity_location из data-postgres.sql.
+     */
+    String LOCATION_POINT = "point(a.longitude, a.latitude)";
+    String LOCATION_BOX = "box(point(:minLon, :minLat), point(:maxLon, :maxLat))";
+    /**
+     * Расстояние от activity до точки (:lat, :lon) в метрах по формуле гаверсинусов, как в GeoBox.distanceMeters.
+     */
+    String LOCATION_DISTANCE = "2 * 6371008.8 * asin(least(1, sqrt(power(sin(radians(a.latitude - :lat) / 2), 2) " +
+            "+ cos(radians(:lat)) * cos(radians(a.latitude)) * power(sin(radians(a.longitude - :lon) / 2), 2))))";
+    String TAG_NAMES = "(SELECT string_agg(t.tag_name, ',' ORDER BY t.tag_name) " +
+            "FROM activity_tags l JOIN tags t ON t.tag_id = l.tag_id WHERE l.activity_id = a.activity_id)";
+    String FEED_PAGE = "SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            "string_agg(t.tag_name, ',' ORDER BY t.tag_name) " +
+            "FROM activity a LEFT JOIN activity_tags l ON l.activity_id = a.activity_id " +
+            "LEFT JOIN tags t ON t.tag_id = l.tag_id " +
+            "WHERE a.activity_user_id = :userId " +
+            "AND (a.activity_creation_date, a.activity_id) < (:beforeDate, :beforeId) " +
+            "GROUP BY a.activity_id " +
+            "ORDER BY a.activity_creation_date DESC, a.activity_id DESC " +
+            "LIMIT :limit";
+    String SEARCH_SELECT = "SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            TAG_NAMES + " FROM activity a WHERE " + SEARCH_DOCUMENT + " @@ " + SEARCH_QUERY + " ";
+    String SEARCH_ORDER = "ORDER BY ts_rank(" + SEARCH_DOCUMENT + ", " + SEARCH_QUERY + ") DESC, a.activity_id DESC " +
+            "LIMIT :limit OFFSET :offset";
+    String SEARCH_TAG_FILTER = "AND a.activity_id IN (SELECT f.activity_id FROM activity_tags f " +
+            "JOIN tags ft ON ft.tag_id = f.tag_id WHERE ft.tag_name IN (:tags) " +
+            "GROUP BY f.activity_id HAVING count(DISTINCT ft.tag_name) = :tagCount) ";
+
     Optional<Activity> findById(Long id);
     Optional<Activity> findByActivityIndex(String activityIndex);
     List<Activity> findByUserActivities(User user);
     List<Activity> findByTags(Tag tag);
 
+    @Query("select a.id from Activity a where a.userActivities.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Страница ленты activity пользователя по убыванию (creationDate, id) - keyset пагинация одним запросом.
+     * Имена тэгов собираются в строку через запятую, пользователь и сущности тэгов не загружаются.
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags]
+     */
+    @Query(value = FEED_PAGE, nativeQuery = true)
+    List<Object[]> findFeedPage(@Param("userId") Long userId,
+                                @Param("beforeDate") LocalDateTime beforeDate,
+                                @Param("beforeId") Long beforeId,
+                                @Param("limit") int limit);
+
+    /**
+     * Страница полнотекстового поиска activity по заголовку и описанию, по убыванию релевантности.
+     * @param query - строка поиска
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags]
+     */
+    @Query(value = SEARCH_SELECT + SEARCH_ORDER, nativeQuery = true)
+    List<Object[]> searchPage(@Param("query") String query,
+                              @Param("limit") int limit,
+                              @Param("offset") int offset);
+
+    /**
+     * Страница полнотекстового поиска activity, как {@link #searchPage}, только activity со всеми тэгами из списка.
+     * @param query - строка поиска
+     * @param tags - имена тэгов фильтра, не пусто
+     * @param tagCount - количество разных тэгов фильтра
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags]
+     */
+    @Query(value = SEARCH_SELECT + SEARCH_TAG_FILTER + SEARCH_ORDER, nativeQuery = true)
+    List<Object[]> searchPageByTags(@Param("query") String query,
+                                    @Param("tags") Collection<String> tags,
+                                    @Param("tagCount") int tagCount,
+                                    @Param("limit") int limit,
+                                    @Param("offset") int offset);
+
+    /**
+     * Страница activity в радиусе от точки по возрастанию расстояния.
+     * Кандидаты выбираются по индексу координат в описанном прямоугольнике, затем отсекаются по точному расстоянию.
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags, latitude, longitude, distance]
+     */
+    @Query(value = "SELECT * FROM (SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            TAG_NAMES + " AS tags, a.latitude, a.longitude, " + LOCATION_DISTANCE + " AS distance " +
+            "FROM activity a " +
+            "WHERE " + LOCATION_POINT + " <@ " + LOCATION_BOX + ") n " +
+            "WHERE n.distance <= :radius " +
+            "ORDER BY n.distance, n.activity_id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> findNearbyPage(@Param("lat") double latitude,
+                                  @Param("lon") double longitude,
+                                  @Param("radius") double radiusMeters,
+                                  @Param("minLat") double minLatitude,
+                                  @Param("minLon") double minLongitude,
+                                  @Param("maxLat") double maxLatitude,
+                                  @Param("maxLon") double maxLongitude,
+                                  @Param("limit") int limit,
+                                  @Param("offset") int offset);
+
+    /**
+     * Страница activity в прямоугольной области по убыванию id.
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags, latitude, longitude, null]
+     */
+    @Query(value = "SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            TAG_NAMES + ", a.latitude, a.longitude, CAST(NULL AS double precision) " +
+            "FROM activity a " +
+            "WHERE " + LOCATION_POINT + " <@ " + LOCATION_BOX + " " +
+            "ORDER BY a.activity_id DESC " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> findInBoxPage(@Param("minLat") double minLatitude,
+                                 @Param("minLon") double minLongitude,
+                                 @Param("maxLat") double maxLatitude,
+                                 @Param("maxLon") double maxLongitude,
+                                 @Param("limit") int limit,
+                                 @Param("offset") int offset);
+
+    /**
+     * Activity по списку id по убыванию id.
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags]
+     */
+    @Query(value = "SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            TAG_NAMES + " " +
+            "FROM activity a WHERE a.activity_id IN (:ids) " +
+            "ORDER BY a.activity_id DESC", nativeQuery = true)
+    List<Object[]> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.repository;
+
+import com.angrydwarfs.framework.models.TimelineEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TimelineRepository extends JpaRepository<TimelineEntry, Long> {
+
+    /**
+     * Добавляет activity в ленты всех подписчиков канала одним запросом без загрузки подписчиков.
+     * @return количество добавленных записей
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO timeline(timeline_user_id, timeline_activity_id, timeline_activity_date) " +
+            "SELECT s.subscriber_id, :activityId, :activityDate FROM user_subscriptions s " +
+            "WHERE s.channel_id = :channelId", nativeQuery = true)
+    int fanOut(@Param("channelId") Long channelId,
+               @Param("activityId") Long activityId,
+               @Param("activityDate") LocalDateTime activityDate);
+
+    /**
+     * Отмечает activity, копирование которой в ленты подписчиков пропущено, - она читается в ленты при чтении.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE activity SET activity_timeline_pull = true WHERE activity_id = :activityId", nativeQuery = true)
+    int markPull(@Param("activityId") Long activityId);
+
+    @Query(value = "SELECT subscriber_id FROM user_subscriptions WHERE channel_id = :channelId", nativeQuery = true)
+    List<Long> findSubscriberIds(@Param("channelId") Long channelId);
+
+    /**
+     * Обрезает ленту пользователя до {@code maxSize} последних записей - граница находится
+     * range scan по индексу IDX_TIMELINE_USER_DATE, удаляются только записи старше границы.
+     * @return количество удаленных записей
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM timeline WHERE timeline_user_id = :userId " +
+            "AND (timeline_activity_date, timeline_activity_id) <= (" +
+            "SELECT e.timeline_activity_date, e.timeline_activity_id FROM timeline e WHERE e.timeline_user_id = :userId " +
+            "ORDER BY e.timeline_activity_date DESC, e.timeline_activity_id DESC OFFSET :maxSize LIMIT 1)", nativeQuery = true)
+    int trimUser(@Param("userId") Long userId, @Param("maxSize") int maxSize);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM timeline WHERE timeline_activity_id = :activityId", nativeQuery = true)
+    int deleteByActivity(@Param("activityId") Long activityId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM timeline WHERE timeline_user_id = :userId", nativeQuery = true)
+    int deleteByUser(@Param("userId") Long userId);
+
+    /**
+     * Удаляет из ленты подписчика activity канала после отписки.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM timeline WHERE timeline_user_id = :subscriberId AND timeline_activity_id IN " +
+            "(SELECT activity_id FROM activity WHERE activity_user_id = :channelId)", nativeQuery = true)
+    int deleteChannelEntries(@Param("channelId") Long channelId, @Param("subscriberId") Long subscriberId);
+
+    /**
+     * Страница домашней ленты пользователя по убыванию (creationDate, id) одним запросом -
+     * записи ленты (range scan по индексу IDX_TIMELINE_USER_DATE) объединяются с activity каналов подписки,
+     * копирование которых в ленты было пропущено (частичный индекс idx_activity_timeline_pull из data-postgres.sql).
+     * Такие activity читаются при чтении независимо от текущего числа подписчиков канала.
+     * @return строки [id, activityTitle, activityDescription, creationDate, tags]
+     */
+    @Query(value = "SELECT a.activity_id, a.activity_title, a.activity_description, a.activity_creation_date, " +
+            "string_agg(t.tag_name, ',' ORDER BY t.tag_name) " +
+            "FROM activity a LEFT JOIN activity_tags l ON l.activity_id = a.activity_id " +
+            "LEFT JOIN tags t ON t.tag_id = l.tag_id " +
+            "WHERE a.activity_id IN (" +
+            "(SELECT e.timeline_activity_id FROM timeline e WHERE e.timeline_user_id = :userId " +
+            "AND (e.timeline_activity_date, e.timeline_activity_id) < (:beforeDate, :beforeId) " +
+            "ORDER BY e.timeline_activity_date DESC, e.timeline_activity_id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT c.activity_id FROM activity c " +
+            "JOIN user_subscriptions s ON s.channel_id = c.activity_user_id " +
+            "WHERE s.subscriber_id = :userId AND c.activity_timeline_pull " +
+            "AND (c.activity_creation_date, c.activity_id) < (:beforeDate, :beforeId) " +
+            "ORDER BY c.activity_creation_date DESC, c.activity_id DESC LIMIT :limit)) " +
+            "GROUP BY a.activity_id " +
+            "ORDER BY a.activity_creation_date DESC, a.activity_id DESC " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Object[]> findTimelinePage(@Param("userId") Long userId,
+                                    @Param("beforeDate") LocalDateTime beforeDate,
+                                    @Param("beforeId") Long beforeId,
+                                    @Param("limit") int limit);
+}
@@ -3,7 +3,11 @@ package com.angrydwarfs.framework.repository;
 import com.angrydwarfs.framework.models.Token;
 import com.angrydwarfs.framework.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,5 +19,19 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     Token findByToken(String token);
 
     List<Token> findByExpiryDateBefore(LocalDateTime localDateTime);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM tokens WHERE token_id IN " +
+            "(SELECT token_id FROM tokens WHERE token_expiry_date < :date LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredChunk(@Param("date") LocalDateTime date, @Param("limit") int limit);
+
     Boolean existsByToken(String token);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Token t SET t.active = false WHERE t.userTokens.id = :userId AND t.active = true")
+    int deactivateByUserId(@Param("userId") Long userId);
+
+    List<Token> findByUserTokensIdAndActiveFalseAndExpiryDateAfter(Long userId, LocalDateTime date);
 }
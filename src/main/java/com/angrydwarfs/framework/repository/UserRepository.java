@@ -1,23 +1,137 @@
 package com.angrydwarfs.framework.repository;
 
 import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.payload.response.UserShortResponse;
+import com.angrydwarfs.framework.payload.response.UserSummaryResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Репозиторий пользователей. Коллекции пользователя загружаются лениво,
+ * набор загружаемых коллекций выбирается методом через именованные графы {@link User}.
+ */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    @EntityGraph(User.GRAPH_PROFILE)
+    Optional<User> findProfileByUsername(String username);
+
+    @EntityGraph(User.GRAPH_AUTH)
+    Optional<User> findAuthByUsername(String username);
+
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.avatarFileName = :fileName where u.id = :id")
+    int updateAvatarFileName(@Param("id") Long id, @Param("fileName") String fileName);
+
     //Optional<User> findById(Long user_id);
     Optional<User> findByUserEmail(String userEmail);
 
-    @EntityGraph(attributePaths = { "subscriptions", "subscribers" })
-    Optional<User> findById(Long user_id);
+    /**
+     * Пользователь с подписками - для выдачи пользователя вместе с подписками и подписчиками.
+     */
+    @EntityGraph(User.GRAPH_SUBSCRIPTION)
+    Optional<User> findWithSubscriptionsById(Long id);
 
+    @Override
+    @EntityGraph(User.GRAPH_ADMIN_LIST)
+    List<User> findAll();
+
+    /**
+     * Поиск пользователя социальной сети по уникальному индексу UK_USR_SOCIAL_NET_ID, с ролями для выдачи токена.
+     */
+    @EntityGraph(User.GRAPH_AUTH)
     Optional<User> findBySocialNetId(String socialNetId);
 
+    @Query("select new com.angrydwarfs.framework.payload.response.UserSummaryResponse(" +
+            "u.id, u.username, u.userEmail, u.creationDate) " +
+            "from User u where u.id > :afterId order by u.id")
+    List<UserSummaryResponse> findSummariesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select u.id, r.mainRoleName from User u join u.mainRoles r where u.id in :ids")
+    List<Object[]> findMainRoleNames(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Подписка - одна строка в user_subscriptions, повторная подписка игнорируется.
+     * @return 1 - подписка добавлена, 0 - подписка уже была
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO user_subscriptions(channel_id, subscriber_id) SELECT :channelId, :subscriberId " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_subscriptions " +
+            "WHERE channel_id = :channelId AND subscriber_id = :subscriberId) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertSubscription(@Param("channelId") Long channelId, @Param("subscriberId") Long subscriberId);
+
+    /**
+     * @return 1 - подписка удалена, 0 - подписки не было
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM user_subscriptions WHERE channel_id = :channelId AND subscriber_id = :subscriberId",
+            nativeQuery = true)
+    int deleteSubscription(@Param("channelId") Long channelId, @Param("subscriberId") Long subscriberId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE usr SET user_subscribers_count = user_subscribers_count + :delta WHERE user_id = :id",
+            nativeQuery = true)
+    int addSubscribersCount(@Param("id") Long id, @Param("delta") long delta);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE usr SET user_subscriptions_count = user_subscriptions_count + :delta WHERE user_id = :id",
+            nativeQuery = true)
+    int addSubscriptionsCount(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * Уменьшает счетчики подписчиков у всех пользователей, на которых подписан пользователь.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE usr SET user_subscribers_count = user_subscribers_count - 1 WHERE user_id IN " +
+            "(SELECT channel_id FROM user_subscriptions WHERE subscriber_id = :id)", nativeQuery = true)
+    int decrementChannelsOfSubscriber(@Param("id") Long id);
+
+    /**
+     * Уменьшает счетчики подписок у всех подписчиков пользователя.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE usr SET user_subscriptions_count = user_subscriptions_count - 1 WHERE user_id IN " +
+            "(SELECT subscriber_id FROM user_subscriptions WHERE channel_id = :id)", nativeQuery = true)
+    int decrementSubscribersOfChannel(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM user_subscriptions WHERE channel_id = :id OR subscriber_id = :id", nativeQuery = true)
+    int deleteAllSubscriptions(@Param("id") Long id);
+
+    @Query("select u.subscribersCount from User u where u.id = :id")
+    Long findSubscribersCount(@Param("id") Long id);
+
+    @Query("select new com.angrydwarfs.framework.payload.response.UserShortResponse(s.id, s.username) " +
+            "from User c join c.subscribers s where c.id = :id and s.id > :afterId order by s.id")
+    List<UserShortResponse> findSubscribersAfter(@Param("id") Long id, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.angrydwarfs.framework.payload.response.UserShortResponse(s.id, s.username) " +
+            "from User c join c.subscriptions s where c.id = :id and s.id > :afterId order by s.id")
+    List<UserShortResponse> findSubscriptionsAfter(@Param("id") Long id, @Param("afterId") Long afterId, Pageable pageable);
+
     Boolean existsByUsername(String username);
     Boolean existsByUserEmail(String userEmail);
 }
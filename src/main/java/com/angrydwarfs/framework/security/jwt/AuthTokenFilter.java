@@ -22,10 +22,13 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
 import com.angrydwarfs.framework.security.services.UserDetailsServiceImpl;
+import com.angrydwarfs.framework.service.PresenceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -40,6 +43,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private PresenceService presenceService;
+
+    @Value("${dwarfsframework.app.jwtClaimsPrincipal:true}")
+    private boolean claimsPrincipal;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -47,15 +56,22 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt) && jwtUtils.getActiveStatusFromJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            JwtClaims claims = jwtUtils.parseJwtToken(jwt);
+            if (claims != null && jwtUtils.getActiveStatusFromJwtToken(jwt)) {
+                String username = claims.getSubject();
+                request.setAttribute(JwtClaims.REQUEST_ATTRIBUTE, claims);
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = claimsPrincipal && claims.hasPrincipal()
+                        ? UserDetailsImpl.build(claims)
+                        : userDetailsService.loadUserByUsernameCached(username);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null,
                         userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (userDetails instanceof UserDetailsImpl) {
+                    presenceService.touch(((UserDetailsImpl) userDetails).getId());
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
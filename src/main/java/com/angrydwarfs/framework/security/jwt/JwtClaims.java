@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Данные проверенного jwt токена. Создаются один раз при проверке подписи токена
+ * и сохраняются в атрибуте запроса {@link #REQUEST_ATTRIBUTE} для повторного использования в контроллерах.
+ * @version 0.001
+ * @author habatoo
+ *
+ * @param "token" - строка jwt токена.
+ * @param "subject" - имя пользователя.
+ * @param "id" - уникальный идентификатор токена (jti).
+ * @param "expiration" - дата истечения срока действия токена.
+ * @param "userId" - id пользователя.
+ * @param "email" - email пользователя.
+ * @param "roles" - роли пользователя на момент выдачи токена.
+ */
+@Getter
+public class JwtClaims {
+    public static final String REQUEST_ATTRIBUTE = JwtClaims.class.getName();
+
+    static final String USER_ID_CLAIM = "uid";
+    static final String EMAIL_CLAIM = "email";
+    static final String ROLES_CLAIM = "roles";
+
+    private final String token;
+    private final String subject;
+    private final String id;
+    private final Date issuedAt;
+    private final Date expiration;
+    private final Long userId;
+    private final String email;
+    private final List<String> roles;
+
+    public JwtClaims(String token, Claims claims) {
+        this.token = token;
+        this.subject = claims.getSubject();
+        this.id = claims.getId();
+        this.issuedAt = claims.getIssuedAt();
+        this.expiration = claims.getExpiration();
+
+        Object uid = claims.get(USER_ID_CLAIM);
+        this.userId = uid instanceof Number ? ((Number) uid).longValue() : null;
+        this.email = claims.get(EMAIL_CLAIM, String.class);
+
+        Object claimRoles = claims.get(ROLES_CLAIM);
+        if (claimRoles instanceof Collection) {
+            List<String> roleNames = new ArrayList<>();
+            for (Object role : (Collection<?>) claimRoles) {
+                roleNames.add(String.valueOf(role));
+            }
+            this.roles = Collections.unmodifiableList(roleNames);
+        } else {
+            this.roles = null;
+        }
+    }
+
+    /**
+     * @return true - если в токене есть все данные для построения пользователя без обращения к БД.
+     */
+    public boolean hasPrincipal() {
+        return userId != null && roles != null;
+    }
+
+    /**
+     * @param nowMillis - текущее время в мс
+     * @return true - если срок действия токена истек.
+     */
+    public boolean isExpired(long nowMillis) {
+        return expiration != null && expiration.getTime() <= nowMillis;
+    }
+}
@@ -17,7 +17,11 @@
 package com.angrydwarfs.framework.security.jwt;
 
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
+import com.angrydwarfs.framework.config.BoundedCache;
 import com.angrydwarfs.framework.models.Token;
 import com.angrydwarfs.framework.repository.TokenRepository;
 import com.angrydwarfs.framework.security.services.UserDetailsImpl;
@@ -26,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import io.jsonwebtoken.*;
@@ -40,32 +45,80 @@ public class JwtUtils {
     @Value("${dwarfsframework.app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
+    private final BoundedCache<String, JwtClaims> verifiedTokens;
+
     @Autowired
     TokenRepository tokenRepository;
 
+    @Autowired
+    TokenRevocationCache tokenRevocationCache;
+
+    public JwtUtils(@Value("${dwarfsframework.app.jwtVerifiedCacheSize:10000}") int verifiedCacheSize) {
+        this.verifiedTokens = new BoundedCache<>(verifiedCacheSize);
+    }
+
     public String generateJwtToken(Authentication authentication) {
 
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-        return Jwts.builder().setSubject((userPrincipal.getUsername())).setIssuedAt(new Date())
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+
+        return Jwts.builder().setSubject((userPrincipal.getUsername())).setId(UUID.randomUUID().toString())
+                .claim(JwtClaims.USER_ID_CLAIM, userPrincipal.getId())
+                .claim(JwtClaims.EMAIL_CLAIM, userPrincipal.getEmail())
+                .claim(JwtClaims.ROLES_CLAIM, roles)
+                .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs)).signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
 
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+        JwtClaims claims = parseJwtToken(token);
+        return claims == null ? null : claims.getSubject();
     }
 
     public boolean getActiveStatusFromJwtToken(String authToken) {
+        Boolean cachedStatus = tokenRevocationCache.isActive(authToken);
+        if (cachedStatus != null) {
+            return cachedStatus;
+        }
+
         Token unActiveToken = tokenRepository.findByToken(authToken);
-        unActiveToken.isActive();
+        if (unActiveToken == null) {
+            return false;
+        }
+        tokenRevocationCache.remember(unActiveToken);
         return unActiveToken.isActive();
     }
 
     public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken) != null;
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена за один разбор.
+     * Недавно проверенные токены берутся из кэша {@link BoundedCache} без блокировок и без повторной проверки HMAC
+     * до истечения их срока действия.
+     * @param authToken - строка jwt токена
+     * @return {@code JwtClaims} - данные токена, {@code null} - если токен не прошел проверку.
+     */
+    public JwtClaims parseJwtToken(String authToken) {
+        if (authToken == null) {
+            return null;
+        }
+        JwtClaims cachedClaims = verifiedTokens.get(authToken, System.currentTimeMillis());
+        if (cachedClaims != null) {
+            return cachedClaims;
+        }
+
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            JwtClaims claims = new JwtClaims(authToken,
+                    Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody());
+            verifiedTokens.put(authToken, claims,
+                    claims.getExpiration() == null ? Long.MAX_VALUE : claims.getExpiration().getTime());
+            return claims;
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -78,6 +131,6 @@ public class JwtUtils {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return null;
     }
 }
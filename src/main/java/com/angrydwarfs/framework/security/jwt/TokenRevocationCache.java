@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.security.jwt;
+
+import com.angrydwarfs.framework.config.BoundedCache;
+import com.angrydwarfs.framework.models.Token;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш статусов токенов в памяти - набор активных токенов и список отозванных токенов.
+ * Ключ - укороченный хэш SHA-256 токена, запись хранится до истечения срока действия токена.
+ * Размер каждого набора ограничен - при переполнении вытесняются записи с истекшим сроком
+ * и давно не использованные записи, см. {@link BoundedCache}.
+ * При промахе статус токена читается из таблицы TOKENS.
+ * @version 0.001
+ * @author habatoo
+ */
+@Component
+public class TokenRevocationCache {
+    private static final int HASH_BYTES = 16;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final BoundedCache<String, Boolean> activeTokens;
+    private final BoundedCache<String, Boolean> revokedTokens;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public TokenRevocationCache(
+            MeterRegistry meterRegistry,
+            @Value("${dwarfsframework.app.tokenCacheSize:100000}") int maxSize
+    ) {
+        this.activeTokens = new BoundedCache<>(maxSize);
+        this.revokedTokens = new BoundedCache<>(maxSize);
+
+        FunctionCounter.builder("auth.token.cache", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.token.cache", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("auth.token.cache.size", activeTokens, BoundedCache::size)
+                .tag("set", "active")
+                .register(meterRegistry);
+        Gauge.builder("auth.token.cache.size", revokedTokens, BoundedCache::size)
+                .tag("set", "revoked")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.token.cache.evictions", activeTokens, BoundedCache::getEvictionCount)
+                .tag("set", "active")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.token.cache.evictions", revokedTokens, BoundedCache::getEvictionCount)
+                .tag("set", "revoked")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает статус токена из кэша.
+     * @param token - строка jwt токена
+     * @return {@code TRUE} - токен активен, {@code FALSE} - токен отозван, {@code null} - токена нет в кэше или его срок истек.
+     */
+    public Boolean isActive(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        if (revokedTokens.get(key, now) != null) {
+            hits.incrementAndGet();
+            return Boolean.FALSE;
+        }
+        if (activeTokens.get(key, now) != null) {
+            hits.incrementAndGet();
+            return Boolean.TRUE;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Запоминает статус токена из таблицы TOKENS - активный токен добавляется в набор активных,
+     * неактивный отзывается.
+     * @param token - токен пользователя
+     */
+    public void remember(Token token) {
+        long expiryMillis = token.getExpiryDate() == null
+                ? Long.MAX_VALUE
+                : token.getExpiryDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (token.isActive()) {
+            putActive(token.getToken(), expiryMillis);
+        } else {
+            revoke(token.getToken(), expiryMillis);
+        }
+    }
+
+    /**
+     * Добавляет токен в набор активных токенов.
+     * @param token - строка jwt токена
+     * @param expiryMillis - время истечения срока действия токена в мс
+     */
+    public void putActive(String token, long expiryMillis) {
+        activeTokens.put(hash(token), Boolean.TRUE, expiryMillis);
+    }
+
+    /**
+     * Отзывает токен - удаляет из набора активных и добавляет в список отозванных.
+     * @param token - строка jwt токена
+     * @param expiryMillis - время истечения срока действия токена в мс
+     */
+    public void revoke(String token, long expiryMillis) {
+        String key = hash(token);
+        activeTokens.remove(key);
+        revokedTokens.put(key, Boolean.TRUE, expiryMillis);
+    }
+
+    /**
+     * Удаляет из кэша записи с истекшим сроком действия.
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        activeTokens.evictExpired(now);
+        revokedTokens.evictExpired(now);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Укороченный хэш токена - первые 16 байт SHA-256 в Base64 без выравнивания.
+     * @param token - строка jwt токена
+     * @return ключ кэша
+     */
+    static String hash(String token) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        byte[] full = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        byte[] shortHash = new byte[HASH_BYTES];
+        System.arraycopy(full, 0, shortHash, 0, HASH_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(shortHash);
+    }
+}
@@ -17,10 +17,12 @@
 package com.angrydwarfs.framework.security.jwt;
 
 import com.angrydwarfs.framework.models.Token;
+import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.payload.response.JwtResponse;
 import com.angrydwarfs.framework.repository.TokenRepository;
 import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.services.UserDetailsImpl;
+import com.angrydwarfs.framework.service.PresenceService;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +32,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -60,13 +63,30 @@ public class TokenUtils {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    TokenRevocationCache tokenRevocationCache;
+
+    @Autowired
+    PresenceService presenceService;
+
     /**
      * Записывет в таблицу Token значения токена с датой создания и срока действи токена
      * @param userName - имя пользователя
      * @param strToken - токен - генерируется из имени пользователя и пароля
      */
     public void makeToken(String userName, String strToken) {
-        Token token = new Token(strToken, userRepository.findByUsername(userName).get());
+        makeToken(userRepository.findIdByUsername(userName).get(), strToken);
+    }
+
+    /**
+     * Записывет в таблицу Token значения токена по id пользователя без чтения пользователя из БД.
+     * @param userId - id пользователя
+     * @param strToken - токен
+     * @return сохраненный токен
+     */
+    public Token makeToken(Long userId, String strToken) {
+        User user = userRepository.getOne(userId);
+        Token token = new Token(strToken, user);
         token.setActive(true);
         Date date = new Date();
         LocalDateTime createDate = Instant.ofEpochMilli(date.getTime())
@@ -78,8 +98,22 @@ public class TokenUtils {
         token.setCreationDate(createDate);
         token.setExpiryDate(expireDate);
 
-        token.setUserTokens(userRepository.findByUsername(userName).get());
+        token.setUserTokens(user);
         tokenRepository.save(token);
+        tokenRevocationCache.remember(token);
+        return token;
+    }
+
+    /**
+     * Фиксирует вход пользователя - сохраняет токен и отмечает присутствие пользователя.
+     * Пользователь берется из результата аутентификации и повторно не читается,
+     * дата последнего входа записывается отложенно через {@link PresenceService}.
+     * @param jwtResponse - результат аутентификации {@link #makeAuth(String, String)}
+     */
+    @Transactional
+    public void recordLogin(JwtResponse jwtResponse) {
+        makeToken(jwtResponse.getId(), jwtResponse.getToken());
+        presenceService.touch(jwtResponse.getId());
     }
 
     /**
@@ -105,13 +139,14 @@ public class TokenUtils {
                     .setExpiration(dateExpDate).signWith(SignatureAlgorithm.HS512, jwtSecret)
                     .compact();
 
-            Token token = new Token(jwt, userRepository.findByUsername(userName).get());
+            User user = userRepository.getOne(userRepository.findIdByUsername(userName).get());
+            Token token = new Token(jwt, user);
             token.setActive(true);
 
             DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             token.setCreationDate(LocalDateTime.parse(strStartDate, formatter2));
             token.setExpiryDate(LocalDateTime.parse(strExpDate, formatter2));
-            token.setUserTokens(userRepository.findByUsername(userName).get());
+            token.setUserTokens(user);
             tokenRepository.save(token);
         } catch (Exception e) {
 
@@ -119,6 +154,43 @@ public class TokenUtils {
 
     }
 
+    /**
+     * Отзывает все токены пользователя - при удалении пользователя или смене имени пользователя,
+     * т.к. имя пользователя и роли записаны в самом токене.
+     * Токены отзываются одним запросом UPDATE, затем отозванные токены с неистекшим сроком
+     * добавляются в кэш отозванных токенов.
+     * @param user - пользователь
+     */
+    public void revokeUserTokens(User user) {
+        tokenRepository.deactivateByUserId(user.getId());
+        for (Token token : tokenRepository.findByUserTokensIdAndActiveFalseAndExpiryDateAfter(user.getId(), LocalDateTime.now())) {
+            tokenRevocationCache.remember(token);
+        }
+    }
+
+    /**
+     * Выдает jwt токен уже проверенному пользователю без проверки пароля - например, пользователю,
+     * вошедшему через социальную сеть. Контекст безопасности текущего потока не изменяется.
+     * @param user - пользователь с загруженными ролями
+     * @return jwt токен и данные пользователя
+     */
+    public JwtResponse makeAuth(User user) {
+        UserDetailsImpl userDetails = UserDetailsImpl.build(user);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        String jwt = jwtUtils.generateJwtToken(authentication);
+
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(item -> item.getAuthority())
+                .collect(Collectors.toList());
+
+        return new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getEmail(),
+                roles);
+    }
+
     public JwtResponse makeAuth(String username, String password) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(username, password));
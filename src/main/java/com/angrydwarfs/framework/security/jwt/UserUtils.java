@@ -19,6 +19,7 @@ package com.angrydwarfs.framework.security.jwt;
 import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.payload.response.MessageResponse;
 import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.services.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -39,6 +40,12 @@ public class UserUtils {
     @Autowired
     PasswordEncoder encoder;
 
+    @Autowired
+    TokenUtils tokenUtils;
+
+    @Autowired
+    UserDetailsServiceImpl userDetailsService;
+
     /**
      * Проверяет username и email на уникальность и отсуствие аналогов в существующей базе
      * @param user - данные пользователя для изменений
@@ -57,9 +64,19 @@ public class UserUtils {
                     .body(new MessageResponse("Error: Email is already in use!"));
         }
 
+        userDetailsService.evict(userFromDb.getUsername());
+        // имя и email пользователя записаны в выданные токены
+        if (!user.getUsername().equals(userFromDb.getUsername())
+                || !user.getUserEmail().equals(userFromDb.getUserEmail())) {
+            tokenUtils.revokeUserTokens(userFromDb);
+        }
         userFromDb.setUsername(user.getUsername());
         userFromDb.setUserEmail(user.getUserEmail());
-        userFromDb.setPassword(encoder.encode(user.getPassword()));
+        // пароль хэшируется только если он передан и отличается от сохраненного хэша
+        String password = user.getPassword();
+        if (password != null && !password.isEmpty() && !password.equals(userFromDb.getPassword())) {
+            userFromDb.setPassword(encoder.encode(password));
+        }
 
         userRepository.save(userFromDb);
         return ResponseEntity.ok(new MessageResponse("User data was update successfully!"));
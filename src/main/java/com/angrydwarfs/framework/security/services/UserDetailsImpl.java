@@ -22,6 +22,8 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.security.jwt.JwtClaims;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -65,6 +67,32 @@ public class UserDetailsImpl implements UserDetails {
                 authorities);
     }
 
+    /**
+     * @param authentication - аутентификация текущего запроса
+     * @return id текущего пользователя из principal (jwt токена или кэша пользователей) без обращения к БД
+     */
+    public static Long currentUserId(Authentication authentication) {
+        return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+    }
+
+    /**
+     * Построение пользователя только по данным jwt токена, без обращения к БД.
+     * @param claims - данные проверенного токена
+     * @return пользователь без пароля
+     */
+    public static UserDetailsImpl build(JwtClaims claims) {
+        List<GrantedAuthority> authorities = claims.getRoles().stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+
+        return new UserDetailsImpl(
+                claims.getUserId(),
+                claims.getSubject(),
+                claims.getEmail(),
+                null,
+                authorities);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -16,27 +16,89 @@
 
 package com.angrydwarfs.framework.security.services;
 
+import com.angrydwarfs.framework.config.BoundedCache;
 import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     @Autowired
     UserRepository userRepository;
 
+    @Value("${dwarfsframework.app.userDetailsCacheSize:10000}")
+    private int cacheSize;
+
+    @Value("${dwarfsframework.app.userDetailsCacheTtlMs:60000}")
+    private long cacheTtlMs;
+
+    private BoundedCache<String, UserDetails> cachedUsers;
+
+    @PostConstruct
+    public void init() {
+        cachedUsers = new BoundedCache<>(cacheSize);
+    }
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String userName) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(userName)
+        User user = userRepository.findAuthByUsername(userName)
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + userName));
 
         return UserDetailsImpl.build(user);
     }
 
+    /**
+     * Сохраняет пароль, перехэшированный при входе с новыми параметрами кодирования.
+     * @param userDetails - данные пользователя
+     * @param newPassword - новый хэш пароля
+     * @return данные пользователя с новым хэшем пароля
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findAuthByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        evict(user.getUsername());
+
+        return UserDetailsImpl.build(user);
+    }
+
+    /**
+     * Загрузка пользователя для проверки запросов по jwt токену через ограниченный кэш по имени пользователя
+     * {@link BoundedCache} - чтение кэша без блокировок.
+     * Для проверки пароля при входе используется {@link #loadUserByUsername(String)} без кэша.
+     * @param userName - имя пользователя
+     * @return данные пользователя
+     */
+    public UserDetails loadUserByUsernameCached(String userName) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        UserDetails cached = cachedUsers.get(userName, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        UserDetails userDetails = loadUserByUsername(userName);
+        cachedUsers.put(userName, userDetails, now + cacheTtlMs);
+        return userDetails;
+    }
+
+    /**
+     * Удаляет пользователя из кэша при изменении или удалении его данных.
+     * @param userName - имя пользователя
+     */
+    public void evict(String userName) {
+        cachedUsers.remove(userName);
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.exceptions.ResourceNotFoundException;
+import com.angrydwarfs.framework.models.Enums.ETag;
+import com.angrydwarfs.framework.payload.request.ActivityImportRequest;
+import com.angrydwarfs.framework.payload.response.ImportResponse;
+import com.angrydwarfs.framework.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Пакетная загрузка activity из JSON массива или NDJSON потока.
+ * Элементы читаются из потока по одному, проверяются и записываются пакетами по {@code activityImportBatchSize}
+ * через jdbc batch - id activity заранее выбираются из последовательности activity_activity_id_seq одним запросом на пакет,
+ * тэги проверяются по справочнику {@link ReferenceDataRegistry} без обращения к БД.
+ * Каждый пакет - отдельная транзакция, ошибка записи пакета не отменяет уже записанные пакеты.
+ * Загруженные activity не рассылаются в домашние ленты подписчиков.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ActivityImportService {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityImportService.class);
+
+    private static final String NEXT_ACTIVITY_IDS = "SELECT nextval('activity_activity_id_seq') FROM generate_series(1, ?)";
+    private static final String INSERT_ACTIVITY = "INSERT INTO activity(activity_id, activity_index, activity_title, " +
+            "activity_description, latitude, longitude, activity_creation_date, activity_user_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ACTIVITY_TAG = "INSERT INTO activity_tags(activity_id, tag_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ReferenceDataRegistry referenceData;
+    private final UserRepository userRepository;
+    private final ActivityTagIndex activityTagIndex;
+
+    @Value("${dwarfsframework.app.activityImportBatchSize:1000}")
+    private int batchSize;
+
+    @Value("${dwarfsframework.app.activityImportMaxErrors:100}")
+    private int maxErrors;
+
+    @Autowired
+    public ActivityImportService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 Validator validator,
+                                 ReferenceDataRegistry referenceData,
+                                 UserRepository userRepository,
+                                 ActivityTagIndex activityTagIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.referenceData = referenceData;
+        this.userRepository = userRepository;
+        this.activityTagIndex = activityTagIndex;
+    }
+
+    /**
+     * Загружает activity из потока. Ошибка разбора или проверки элемента записывается в отчет, загрузка продолжается,
+     * при нарушении синтаксиса JSON загрузка останавливается.
+     * @param input - JSON массив activity или NDJSON поток activity
+     * @param defaultUserId - id автора для элементов без userId
+     * @return количество загруженных activity и ошибки элементов
+     * @throws IOException - ошибка чтения потока
+     */
+    public ImportResponse importActivities(InputStream input, Long defaultUserId) throws IOException {
+        ImportResponse report = new ImportResponse(maxErrors);
+        Map<Long, Boolean> knownUsers = new HashMap<>();
+        List<Row> chunk = new ArrayList<>(batchSize);
+        long index = 0;
+
+        try (MappingIterator<ActivityImportRequest> items =
+                     objectMapper.readerFor(ActivityImportRequest.class).readValues(input)) {
+            while (true) {
+                ActivityImportRequest item;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    item = items.nextValue();
+                } catch (JsonParseException e) {
+                    report.addError(index, "Malformed JSON: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    report.addError(index++, "Invalid item: " + e.getOriginalMessage());
+                    continue;
+                }
+
+                try {
+                    chunk.add(toRow(item, index, defaultUserId, knownUsers));
+                } catch (IllegalArgumentException e) {
+                    report.addError(index, e.getMessage());
+                }
+                index++;
+
+                if (chunk.size() >= batchSize) {
+                    write(chunk, report);
+                }
+            }
+        }
+        write(chunk, report);
+        return report;
+    }
+
+    private Row toRow(ActivityImportRequest item, long index, Long defaultUserId, Map<Long, Boolean> knownUsers) {
+        Set<ConstraintViolation<ActivityImportRequest>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<ActivityImportRequest> violation = violations.iterator().next();
+            throw new IllegalArgumentException(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+
+        Long userId = item.getUserId() != null ? item.getUserId() : defaultUserId;
+        if (!knownUsers.computeIfAbsent(userId, userRepository::existsById)) {
+            throw new IllegalArgumentException("User is not exist: " + userId);
+        }
+
+        Set<ETag> tags = EnumSet.noneOf(ETag.class);
+        List<Integer> tagIds = new ArrayList<>();
+        if (item.getTags() != null) {
+            for (String tag : item.getTags()) {
+                try {
+                    ETag tagName = ETag.valueOf(tag);
+                    if (tags.add(tagName)) {
+                        tagIds.add(referenceData.tagId(tagName));
+                    }
+                } catch (IllegalArgumentException | ResourceNotFoundException e) {
+                    throw new IllegalArgumentException("Tag is not exist: " + tag);
+                }
+            }
+        }
+
+        LocalDateTime creationDate = item.getCreationDate() != null ? item.getCreationDate() : LocalDateTime.now();
+        return new Row(index, item, userId, creationDate, tags, tagIds);
+    }
+
+    /**
+     * Записывает пакет в одной транзакции и очищает его. При ошибке все элементы пакета считаются не загруженными.
+     */
+    private void write(List<Row> chunk, ImportResponse report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(NEXT_ACTIVITY_IDS, Long.class, chunk.size());
+                List<Object[]> activities = new ArrayList<>(chunk.size());
+                List<Object[]> activityTags = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Row row = chunk.get(i);
+                    row.id = ids.get(i);
+                    activities.add(new Object[] {
+                            row.id,
+                            UUID.randomUUID().toString(),
+                            row.item.getActivityTitle(),
+                            row.item.getActivityBody(),
+                            row.item.getLatitude(),
+                            row.item.getLongitude(),
+                            Timestamp.valueOf(row.creationDate),
+                            row.userId});
+                    for (Integer tagId : row.tagIds) {
+                        activityTags.add(new Object[] {row.id, tagId});
+                    }
+                }
+                jdbcTemplate.batchUpdate(INSERT_ACTIVITY, activities);
+                jdbcTemplate.batchUpdate(INSERT_ACTIVITY_TAG, activityTags);
+            });
+            for (Row row : chunk) {
+                activityTagIndex.put(row.id, row.tags);
+            }
+            report.addImported(chunk.size());
+        } catch (RuntimeException e) {
+            logger.error("Cannot import activities batch: {}", e.getMessage());
+            for (Row row : chunk) {
+                report.addError(row.index, "Batch was not written: " + e.getMessage());
+            }
+        }
+        chunk.clear();
+    }
+
+    /**
+     * Проверенный элемент загрузки.
+     */
+    private static final class Row {
+        private final long index;
+        private final ActivityImportRequest item;
+        private final Long userId;
+        private final LocalDateTime creationDate;
+        private final Set<ETag> tags;
+        private final List<Integer> tagIds;
+        private Long id;
+
+        private Row(long index, ActivityImportRequest item, Long userId, LocalDateTime creationDate,
+                    Set<ETag> tags, List<Integer> tagIds) {
+            this.index = index;
+            this.item = item;
+            this.userId = userId;
+            this.creationDate = creationDate;
+            this.tags = tags;
+            this.tagIds = tagIds;
+        }
+    }
+}
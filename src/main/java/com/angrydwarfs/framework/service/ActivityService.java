@@ -0,0 +1,271 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.models.Enums.ETag;
+import com.angrydwarfs.framework.payload.response.ActivityResponse;
+import com.angrydwarfs.framework.payload.response.NearbyActivityResponse;
+import com.angrydwarfs.framework.payload.response.PageResponse;
+import com.angrydwarfs.framework.repository.ActivityRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Лента activity пользователя по убыванию даты создания, полнотекстовый поиск, поиск activity по тэгам и координатам.
+ * Курсор страницы - дата создания и id последнего activity предыдущей страницы в виде {@code 2021-02-22T10:15:30_42},
+ * поэтому новые activity, добавленные между запросами, не сдвигают следующие страницы.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ActivityService {
+    private static final String CURSOR_SEPARATOR = "_";
+    private static final LocalDateTime FIRST_PAGE_DATE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final ActivityRepository activityRepository;
+    private final ActivityTagIndex activityTagIndex;
+
+    @Autowired
+    public ActivityService(ActivityRepository activityRepository, ActivityTagIndex activityTagIndex) {
+        this.activityRepository = activityRepository;
+        this.activityTagIndex = activityTagIndex;
+    }
+
+    /**
+     * Страница ленты activity пользователя.
+     * @param userId - id автора activity
+     * @param cursor - курсор предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы и курсор следующей страницы
+     * @throws IllegalArgumentException - если курсор не разобран
+     */
+    public PageResponse<ActivityResponse> findFeed(Long userId, String cursor, int limit) {
+        Cursor before = Cursor.parse(cursor);
+        return toPage(activityRepository.findFeedPage(userId, before.date, before.id, limit), limit);
+    }
+
+    /**
+     * Страница полнотекстового поиска activity по заголовку и описанию.
+     * Курсор страницы поиска - смещение от начала выдачи, так как порядок задается релевантностью.
+     * @param query - строка поиска
+     * @param tags - тэги фильтра, пусто - без фильтра
+     * @param cursor - курсор предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы по убыванию релевантности и курсор следующей страницы
+     * @throws IllegalArgumentException - если курсор не разобран
+     */
+    public PageResponse<ActivityResponse> search(String query, Collection<ETag> tags, String cursor, int limit) {
+        int offset = parseOffset(cursor);
+        Set<String> tagNames = new HashSet<>();
+        if (tags != null) {
+            for (ETag tag : tags) {
+                tagNames.add(tag.name());
+            }
+        }
+        List<ActivityResponse> activities = toResponses(tagNames.isEmpty()
+                ? activityRepository.searchPage(query.trim(), limit, offset)
+                : activityRepository.searchPageByTags(query.trim(), tagNames, tagNames.size(), limit, offset));
+        String nextCursor = activities.size() == limit ? String.valueOf(offset + limit) : null;
+        return new PageResponse<>(activities, nextCursor);
+    }
+
+    /**
+     * Страница activity по тэгам из индекса {@link ActivityTagIndex} по убыванию id.
+     * Курсор страницы - id последнего activity предыдущей страницы.
+     * @param tags - тэги запроса, не пусто
+     * @param matchAny - true - activity с любым из тэгов, false - со всеми тэгами
+     * @param cursor - курсор предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы и курсор следующей страницы
+     * @throws IllegalArgumentException - если курсор не разобран или тэги не заданы
+     */
+    public PageResponse<ActivityResponse> findByTags(Collection<ETag> tags, boolean matchAny, String cursor, int limit) {
+        Long beforeId;
+        try {
+            beforeId = cursor == null || cursor.isEmpty() ? null : Long.valueOf(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        List<Long> ids = matchAny
+                ? activityTagIndex.findAny(tags, beforeId, limit)
+                : activityTagIndex.findAll(tags, beforeId, limit);
+        if (ids.isEmpty()) {
+            return new PageResponse<>(Collections.emptyList(), null);
+        }
+
+        List<ActivityResponse> activities = toResponses(activityRepository.findSummariesByIds(ids));
+        String nextCursor = ids.size() == limit ? String.valueOf(ids.get(ids.size() - 1)) : null;
+        return new PageResponse<>(activities, nextCursor);
+    }
+
+    /**
+     * Страница activity в радиусе от точки по возрастанию расстояния.
+     * @param latitude - широта центра
+     * @param longitude - долгота центра
+     * @param radiusMeters - радиус, м
+     * @param cursor - смещение предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы с координатами и расстоянием и курсор следующей страницы
+     * @throws IllegalArgumentException - если координаты или курсор не разобраны
+     */
+    public PageResponse<NearbyActivityResponse> findNearby(double latitude, double longitude, double radiusMeters,
+                                                           String cursor, int limit) {
+        int offset = parseOffset(cursor);
+        GeoBox box = GeoBox.around(latitude, longitude, radiusMeters);
+        return toNearbyPage(activityRepository.findNearbyPage(latitude, longitude, radiusMeters,
+                box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude(),
+                limit, offset), offset, limit);
+    }
+
+    /**
+     * Страница activity в прямоугольной области по убыванию id.
+     * @param box - область поиска
+     * @param cursor - смещение предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы с координатами и курсор следующей страницы
+     * @throws IllegalArgumentException - если курсор не разобран
+     */
+    public PageResponse<NearbyActivityResponse> findInBox(GeoBox box, String cursor, int limit) {
+        int offset = parseOffset(cursor);
+        return toNearbyPage(activityRepository.findInBoxPage(
+                box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude(),
+                limit, offset), offset, limit);
+    }
+
+    /**
+     * @param rows - строки [id, activityTitle, activityDescription, creationDate, tags, latitude, longitude, distance]
+     */
+    private static PageResponse<NearbyActivityResponse> toNearbyPage(List<Object[]> rows, int offset, int limit) {
+        List<NearbyActivityResponse> activities = new ArrayList<>();
+        for (Object[] row : rows) {
+            String tagNames = (String) row[4];
+            activities.add(new NearbyActivityResponse(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    (String) row[2],
+                    ((Timestamp) row[3]).toLocalDateTime(),
+                    tagNames == null ? Collections.emptyList() : Arrays.asList(tagNames.split(",")),
+                    toDouble(row[5]),
+                    toDouble(row[6]),
+                    toDouble(row[7])));
+        }
+        String nextCursor = activities.size() == limit ? String.valueOf(offset + limit) : null;
+        return new PageResponse<>(activities, nextCursor);
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+
+    /**
+     * Собирает страницу из строк [id, activityTitle, activityDescription, creationDate, tags].
+     * @param rows - строки запроса
+     * @param limit - размер страницы
+     * @return activity страницы и курсор следующей страницы
+     */
+    static PageResponse<ActivityResponse> toPage(List<Object[]> rows, int limit) {
+        List<ActivityResponse> activities = toResponses(rows);
+
+        String nextCursor = null;
+        if (activities.size() == limit) {
+            ActivityResponse last = activities.get(activities.size() - 1);
+            nextCursor = last.getCreationDate() + CURSOR_SEPARATOR + last.getId();
+        }
+        return new PageResponse<>(activities, nextCursor);
+    }
+
+    /**
+     * @param rows - строки [id, activityTitle, activityDescription, creationDate, tags]
+     * @return activity в порядке строк
+     */
+    static List<ActivityResponse> toResponses(List<Object[]> rows) {
+        List<ActivityResponse> activities = new ArrayList<>();
+        for (Object[] row : rows) {
+            String tagNames = (String) row[4];
+            activities.add(new ActivityResponse(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    (String) row[2],
+                    ((Timestamp) row[3]).toLocalDateTime(),
+                    tagNames == null ? Collections.emptyList() : Arrays.asList(tagNames.split(","))));
+        }
+        return activities;
+    }
+
+    /**
+     * @param cursor - смещение страницы поиска, null или пусто - для первой страницы
+     * @throws IllegalArgumentException - если курсор не разобран
+     */
+    static int parseOffset(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Курсор ленты - дата создания и id последнего activity предыдущей страницы.
+     */
+    static final class Cursor {
+        final LocalDateTime date;
+        final long id;
+
+        private Cursor(LocalDateTime date, long id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        /**
+         * @param cursor - строка курсора, null или пусто - для первой страницы
+         * @throws IllegalArgumentException - если курсор не разобран
+         */
+        static Cursor parse(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return new Cursor(FIRST_PAGE_DATE, Long.MAX_VALUE);
+            }
+            int separator = cursor.lastIndexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            try {
+                return new Cursor(LocalDateTime.parse(cursor.substring(0, separator)),
+                        Long.parseLong(cursor.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+    }
+}
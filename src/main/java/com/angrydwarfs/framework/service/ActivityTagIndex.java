@@ -0,0 +1,257 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.models.Enums.ETag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс тэгов activity в памяти - для каждого тэга битовая карта id activity.
+ * Отвечает на запросы "все тэги" (AND) и "любой тэг" (OR) обходом битовых карт от больших id к меньшим
+ * без копирования карт, количество activity по тэгу хранится отдельно и читается без обхода.
+ * Индекс строится из таблицы ACTIVITY_TAGS при старте и обновляется при создании и удалении activity.
+ * id activity должен помещаться в int.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ActivityTagIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityTagIndex.class);
+
+    private static final String SELECT_ACTIVITY_TAGS = "SELECT l.activity_id, t.tag_name " +
+            "FROM activity_tags l JOIN tags t ON t.tag_id = l.tag_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<ETag, BitSet> activities = emptyIndex();
+    private Map<ETag, Integer> counts = new EnumMap<>(ETag.class);
+
+    @Autowired
+    public ActivityTagIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Перестраивает индекс по таблице ACTIVITY_TAGS. Запросы во время чтения таблицы отвечают по старому индексу.
+     */
+    @PostConstruct
+    public void rebuild() {
+        Map<ETag, BitSet> rebuilt = emptyIndex();
+        jdbcTemplate.query(SELECT_ACTIVITY_TAGS, (RowCallbackHandler) rs -> {
+            ETag tag;
+            try {
+                tag = ETag.valueOf(rs.getString(2));
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            rebuilt.get(tag).set(toIndex(rs.getLong(1)));
+        });
+
+        lock.writeLock().lock();
+        try {
+            activities = rebuilt;
+            counts = new EnumMap<>(ETag.class);
+            for (Map.Entry<ETag, BitSet> entry : rebuilt.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().cardinality());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Activity tag index rebuilt: {}", counts);
+    }
+
+    /**
+     * Задает тэги activity, прежние тэги activity удаляются из индекса.
+     * @param activityId - id activity
+     * @param tags - тэги activity
+     */
+    public void put(long activityId, Collection<ETag> tags) {
+        int index = toIndex(activityId);
+        lock.writeLock().lock();
+        try {
+            clear(index);
+            for (ETag tag : tags) {
+                BitSet bits = activities.get(tag);
+                if (!bits.get(index)) {
+                    bits.set(index);
+                    counts.merge(tag, 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет activity из индекса.
+     * @param activityId - id activity
+     */
+    public void remove(long activityId) {
+        int index = toIndex(activityId);
+        lock.writeLock().lock();
+        try {
+            clear(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * id activity, у которых есть все тэги, по убыванию id.
+     * @param tags - тэги запроса, не пусто
+     * @param beforeId - верхняя граница id (не включительно), null - без границы
+     * @param limit - количество id
+     * @return id activity
+     */
+    public List<Long> findAll(Collection<ETag> tags, Long beforeId, int limit) {
+        List<Long> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<BitSet> sets = setsOf(tags);
+            ETag rarest = null;
+            for (ETag tag : tags) {
+                if (rarest == null || counts.getOrDefault(tag, 0) < counts.getOrDefault(rarest, 0)) {
+                    rarest = tag;
+                }
+            }
+            BitSet smallest = activities.get(rarest);
+            int index = smallest.previousSetBit(startIndex(beforeId));
+            while (index >= 0 && result.size() < limit) {
+                if (containsAll(sets, index)) {
+                    result.add((long) index);
+                }
+                index = smallest.previousSetBit(index - 1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * id activity, у которых есть хотя бы один из тэгов, по убыванию id.
+     * @param tags - тэги запроса, не пусто
+     * @param beforeId - верхняя граница id (не включительно), null - без границы
+     * @param limit - количество id
+     * @return id activity
+     */
+    public List<Long> findAny(Collection<ETag> tags, Long beforeId, int limit) {
+        List<Long> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<BitSet> sets = setsOf(tags);
+            int index = previousOfAny(sets, startIndex(beforeId));
+            while (index >= 0 && result.size() < limit) {
+                result.add((long) index);
+                index = previousOfAny(sets, index - 1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return количество activity по каждому тэгу.
+     */
+    public Map<ETag, Integer> counts() {
+        lock.readLock().lock();
+        try {
+            Map<ETag, Integer> result = new EnumMap<>(ETag.class);
+            for (ETag tag : ETag.values()) {
+                result.put(tag, counts.getOrDefault(tag, 0));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clear(int index) {
+        for (Map.Entry<ETag, BitSet> entry : activities.entrySet()) {
+            if (entry.getValue().get(index)) {
+                entry.getValue().clear(index);
+                counts.merge(entry.getKey(), -1, Integer::sum);
+            }
+        }
+    }
+
+    private List<BitSet> setsOf(Collection<ETag> tags) {
+        if (tags == null || tags.isEmpty()) {
+            throw new IllegalArgumentException("Tags are empty");
+        }
+        List<BitSet> sets = new ArrayList<>();
+        for (ETag tag : tags) {
+            sets.add(activities.get(tag));
+        }
+        return sets;
+    }
+
+    private static boolean containsAll(List<BitSet> sets, int index) {
+        for (BitSet bits : sets) {
+            if (!bits.get(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int previousOfAny(List<BitSet> sets, int from) {
+        int result = -1;
+        for (BitSet bits : sets) {
+            result = Math.max(result, bits.previousSetBit(from));
+        }
+        return result;
+    }
+
+    private static int startIndex(Long beforeId) {
+        if (beforeId == null || beforeId > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE - 1;
+        }
+        return beforeId <= 0 ? -1 : (int) (beforeId - 1);
+    }
+
+    private static int toIndex(long activityId) {
+        if (activityId < 0 || activityId >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Activity id out of index range: " + activityId);
+        }
+        return (int) activityId;
+    }
+
+    private static Map<ETag, BitSet> emptyIndex() {
+        Map<ETag, BitSet> index = new EnumMap<>(ETag.class);
+        for (ETag tag : ETag.values()) {
+            index.put(tag, new BitSet());
+        }
+        return index;
+    }
+}
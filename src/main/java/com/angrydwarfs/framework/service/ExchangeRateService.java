@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.config.ExchangeRateTable;
+import com.angrydwarfs.framework.config.FastMoney;
+import com.angrydwarfs.framework.models.ExchangeRate;
+import com.angrydwarfs.framework.repository.ExchangeRateRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Курсы валют для перевода денежных сумм. Текущая {@link ExchangeRateTable} хранится в volatile поле:
+ * перевод суммы читает ссылку на таблицу без блокировок, перезагрузка строит новую таблицу целиком
+ * и заменяет ссылку, не останавливая читателей. Если курсы не удалось загрузить, остается прежняя таблица.
+ * Курсы читаются из файла {@code exchangeRatesLocation} (строки вида USD=74.25 - стоимость единицы валюты
+ * в базовой валюте {@code baseCurrency}), затем из таблицы EXCHANGE_RATES - курсы из БД заменяют курсы из файла.
+ * Курсы перечитываются по расписанию каждые {@code exchangeRatesReloadMs} мс и по вызову {@link #reload()}.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ExchangeRateService {
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRateService.class);
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final ResourceLoader resourceLoader;
+    private final Currency baseCurrency;
+    private final String ratesLocation;
+
+    private volatile ExchangeRateTable table;
+
+    @Autowired
+    public ExchangeRateService(
+            ExchangeRateRepository exchangeRateRepository,
+            ResourceLoader resourceLoader,
+            MeterRegistry meterRegistry,
+            @Value("${dwarfsframework.app.baseCurrency:RUB}") String baseCurrency,
+            @Value("${dwarfsframework.app.exchangeRatesLocation:}") String ratesLocation
+    ) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.resourceLoader = resourceLoader;
+        this.baseCurrency = Currency.getInstance(baseCurrency);
+        this.ratesLocation = ratesLocation;
+        this.table = ExchangeRateTable.empty(this.baseCurrency);
+
+        Gauge.builder("exchange.rates.currencies", this, s -> s.table.getCurrencies().size())
+                .register(meterRegistry);
+        Gauge.builder("exchange.rates.age", this, s -> System.currentTimeMillis() - s.table.getLoadedAt())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * @return текущая таблица курсов - не меняется, пока ее используют
+     */
+    public ExchangeRateTable getTable() {
+        return table;
+    }
+
+    public Currency getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * Перевод суммы в другую валюту с банковским округлением.
+     * @param money - денежная сумма
+     * @param currency - валюта результата
+     * @return денежная сумма в валюте {@code currency}
+     * @throws IllegalArgumentException - если курса одной из валют нет
+     */
+    public FastMoney convert(FastMoney money, Currency currency) {
+        return table.convert(money, currency, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * @param money - денежная сумма
+     * @param currency - валюта результата
+     * @param roundingMode - округление до минимальной единицы валюты результата
+     * @return денежная сумма в валюте {@code currency}
+     * @throws IllegalArgumentException - если курса одной из валют нет
+     */
+    public FastMoney convert(FastMoney money, Currency currency, RoundingMode roundingMode) {
+        return table.convert(money, currency, roundingMode);
+    }
+
+    /**
+     * Перечитывает курсы из файла и БД и заменяет таблицу курсов.
+     * Перезагрузки выполняются по одной, перевод сумм в это время использует прежнюю таблицу.
+     * @return новая таблица курсов
+     */
+    public synchronized ExchangeRateTable reload() {
+        Map<Currency, BigDecimal> rates = new HashMap<>(loadFile());
+        for (ExchangeRate exchangeRate : exchangeRateRepository.findAll()) {
+            rates.put(Currency.getInstance(exchangeRate.getCurrencyCode()), exchangeRate.getRate());
+        }
+        table = new ExchangeRateTable(baseCurrency, rates, System.currentTimeMillis());
+        logger.info("Exchange rates loaded: {} currencies, base {}", table.getCurrencies().size(), baseCurrency);
+        return table;
+    }
+
+    /**
+     * Фоновая перезагрузка курсов по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${dwarfsframework.app.exchangeRatesReloadMs:3600000}",
+            initialDelayString = "${dwarfsframework.app.exchangeRatesReloadMs:3600000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Cannot reload exchange rates, keeping rates loaded at {}: {}",
+                    table.getLoadedAt(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return курсы из файла {@code exchangeRatesLocation}, пустой набор - если файл не задан
+     * @throws IllegalStateException - если файл не читается
+     */
+    private Map<Currency, BigDecimal> loadFile() {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        if (ratesLocation == null || ratesLocation.isEmpty()) {
+            return rates;
+        }
+        Resource resource = resourceLoader.getResource(ratesLocation);
+        if (!resource.exists()) {
+            logger.warn("Exchange rates file {} not found", ratesLocation);
+            return rates;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read exchange rates from " + ratesLocation, e);
+        }
+        for (String code : properties.stringPropertyNames()) {
+            rates.put(Currency.getInstance(code.trim()), new BigDecimal(properties.getProperty(code).trim()));
+        }
+        return rates;
+    }
+}
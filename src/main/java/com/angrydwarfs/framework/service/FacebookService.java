@@ -27,13 +27,18 @@ import com.angrydwarfs.framework.security.jwt.JwtUtils;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
 import com.angrydwarfs.framework.security.services.UserDetailsServiceImpl;
 import com.angrydwarfs.framework.service.client.FacebookClient;
-import lombok.var;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FacebookService {
@@ -44,10 +49,7 @@ public class FacebookService {
     private FacebookClient facebookClient;
 
     @Autowired
-    MainRoleRepository mainRoleRepository;
-
-    @Autowired
-    StatusRepository statusRepository;
+    ReferenceDataRegistry referenceData;
 
     @Autowired
     private UserService userService;
@@ -55,9 +57,6 @@ public class FacebookService {
     @Autowired
     private JwtUtils jwtUtils;
 
-    @Autowired
-    SubRoleRepository subRoleRepository;
-
     @Autowired
     UserDetailsServiceImpl userDetailsService;
 
@@ -70,21 +69,79 @@ public class FacebookService {
     @Autowired
     TokenRepository tokenRepository;
 
-    public JwtResponse loginUser(String fbAccessToken) {
-        var facebookUser = facebookClient.getUser(fbAccessToken);
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final Map<String, Object> registrationLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Вход пользователя Facebook. Запрос к Graph API выполняется в пуле {@link FacebookClient},
+     * поиск или создание пользователя и выдача токена - в потоке, завершившем запрос.
+     * Время входа и ошибки публикуются в метрике auth.social.login.
+     * @param fbAccessToken - access token пользователя Facebook
+     * @return токен пользователя
+     */
+    public CompletableFuture<JwtResponse> loginUser(String fbAccessToken) {
+        long start = System.nanoTime();
+        return facebookClient.getUser(fbAccessToken)
+                .thenApply(this::loginUser)
+                .whenComplete((jwt, error) -> Timer.builder("auth.social.login")
+                        .tag("provider", "facebook")
+                        .tag("outcome", error == null ? "success" : "error")
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
 
-        if (facebookUser.getId() != null) {
+    /**
+     * Пользователь ищется по уникальному SOCIAL_NET_ID, новый пользователь создается только при первом входе.
+     * Токен выдается без AuthenticationManager - пароль пользователя социальной сети не проверяется,
+     * поэтому повторный вход не выполняет ни одного хэширования BCrypt.
+     */
+    private JwtResponse loginUser(FacebookUser facebookUser) {
+        if (facebookUser.getId() == null) {
             throw new InternalServerException("Unable to login facebook user id " + facebookUser.getFirstName() + " " + facebookUser.getLastName());
-        } else {
-            List newUserAndToken = convertTo(facebookUser);
-            User user = (User) newUserAndToken.get(0);
-            JwtResponse jwt =  (JwtResponse) newUserAndToken.get(1);
+        }
+
+        User user = findOrCreateUser(facebookUser);
+        JwtResponse jwt = tokenUtils.makeAuth(user);
+        tokenUtils.recordLogin(jwt);
+        return jwt;
+    }
 
-            return jwt;
+    /**
+     * Одновременные первые входы одного пользователя на этом сервере ждут друг друга, между серверами
+     * дубликат не дает создать уникальный индекс UK_USR_SOCIAL_NET_ID - проигравший вход читает созданного пользователя.
+     */
+    private User findOrCreateUser(FacebookUser facebookUser) {
+        String socialNetId = facebookUser.getId();
+        Optional<User> existing = userRepository.findBySocialNetId(socialNetId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        Object lock = registrationLocks.computeIfAbsent(socialNetId, id -> new Object());
+        try {
+            synchronized (lock) {
+                existing = userRepository.findBySocialNetId(socialNetId);
+                if (existing.isPresent()) {
+                    return existing.get();
+                }
+                try {
+                    userRepository.saveAndFlush(convertTo(facebookUser));
+                } catch (DataIntegrityViolationException e) {
+                    return userRepository.findBySocialNetId(socialNetId).orElseThrow(() -> e);
+                }
+                // роли сохраненного пользователя - ссылки справочника без загруженных полей, вне сессии
+                // они не читаются, поэтому для выдачи токена пользователь читается заново вместе с ролями
+                return userRepository.findBySocialNetId(socialNetId).get();
+            }
+        } finally {
+            registrationLocks.remove(socialNetId, lock);
         }
     }
 
-    private List<Object> convertTo(FacebookUser facebookUser) {
+    private User convertTo(FacebookUser facebookUser) {
         // Create new user's account
         String password = generatePassword(8);
         User user = new User(
@@ -94,28 +151,23 @@ public class FacebookService {
         );
 
         Set<MainRole> roles = new HashSet<>();
-        MainRole userRole = mainRoleRepository.findByMainRoleName(EMainRole.ROLE_USER).get();
+        MainRole userRole = referenceData.mainRole(EMainRole.ROLE_USER);
         roles.add(userRole);
         user.setMainRoles(roles);
 
         Set<SubRole> subRoleSet = new HashSet<>();
-        subRoleSet.add(subRoleRepository.findBySubRoleName(ESubRole.COMMON_USER).get());
+        subRoleSet.add(referenceData.subRole(ESubRole.COMMON_USER));
         user.setSubRoles(subRoleSet);
         user.setCreationDate(LocalDateTime.now());
 
         Set<Status> statusSet = new HashSet<>();
-        statusSet.add(statusRepository.findByUserStatus(EStatus.COMMON).get());
+        statusSet.add(referenceData.status(EStatus.COMMON));
         user.setUserStatus(statusSet);
         user.setStatusStartDate(LocalDateTime.now());
         user.setStatusEndDate(null);
         user.setSocialNetId(facebookUser.getId());
 
-        userRepository.save(user);
-        List<Object> newUserAndToken  = new ArrayList<>();
-        newUserAndToken.add(user);
-        newUserAndToken.add(tokenUtils.makeAuth(user.getUsername(), password));
-
-        return newUserAndToken;
+        return user;
     }
 
     private String generateUsername(String firstName, String lastName) {
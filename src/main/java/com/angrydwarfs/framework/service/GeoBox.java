@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+/**
+ * Прямоугольная область на карте в градусах - фильтр запроса activity по индексу координат.
+ * Для поиска в радиусе строится описанный вокруг круга прямоугольник, точное расстояние считается по формуле гаверсинусов.
+ * Если круг пересекает полюс или 180-й меридиан, область расширяется на все долготы.
+ * @version 0.001
+ * @author habatoo
+ */
+public final class GeoBox {
+    /** Средний радиус Земли, м. */
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    private GeoBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * @param minLatitude - южная граница
+     * @param minLongitude - западная граница
+     * @param maxLatitude - северная граница
+     * @param maxLongitude - восточная граница
+     * @return область по границам
+     * @throws IllegalArgumentException - если границы вне допустимых значений или не упорядочены
+     */
+    public static GeoBox of(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        checkPoint(minLatitude, minLongitude);
+        checkPoint(maxLatitude, maxLongitude);
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException("Invalid bounding box");
+        }
+        return new GeoBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    /**
+     * @param latitude - широта центра
+     * @param longitude - долгота центра
+     * @param radiusMeters - радиус, м
+     * @return прямоугольник, описанный вокруг круга
+     * @throws IllegalArgumentException - если координаты вне допустимых значений или радиус не положительный
+     */
+    public static GeoBox around(double latitude, double longitude, double radiusMeters) {
+        checkPoint(latitude, longitude);
+        if (!(radiusMeters > 0)) {
+            throw new IllegalArgumentException("Invalid radius: " + radiusMeters);
+        }
+        double angularRadius = radiusMeters / EARTH_RADIUS_METERS;
+        double deltaLatitude = Math.toDegrees(angularRadius);
+        double minLatitude = latitude - deltaLatitude;
+        double maxLatitude = latitude + deltaLatitude;
+        double sinDeltaLongitude = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if (minLatitude <= -90 || maxLatitude >= 90 || sinDeltaLongitude >= 1) {
+            return new GeoBox(Math.max(minLatitude, -90), -180, Math.min(maxLatitude, 90), 180);
+        }
+
+        // наибольшее отклонение по долготе достигается не на широте центра, а ближе к полюсу
+        double deltaLongitude = Math.toDegrees(Math.asin(sinDeltaLongitude));
+        double minLongitude = longitude - deltaLongitude;
+        double maxLongitude = longitude + deltaLongitude;
+        if (minLongitude < -180 || maxLongitude > 180) {
+            return new GeoBox(minLatitude, -180, maxLatitude, 180);
+        }
+        return new GeoBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    /**
+     * Расстояние между точками по формуле гаверсинусов, то же выражение используется в запросе activity.
+     * @return расстояние, м
+     */
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @return true - если точка лежит в области.
+     */
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    private static void checkPoint(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.payload.response.ImagePurgeResponse;
+import com.angrydwarfs.framework.service.ImageStorageService.StoredImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Очистка хранилища изображений от файлов, на которые нет ссылок.
+ * Ссылки на файл - поля USR.AVATAR_FILE_NAME и ACTIVITY.ACTIVITY_FILE_NAME, число ссылок считается по БД
+ * при каждой очистке, поэтому не расходится с данными при удалении пользователей и activity.
+ * Файл без ссылок удаляется, если он не изменялся дольше {@code imagePurgeGraceMs} мс - загруженный файл
+ * сохраняется в хранилище до того, как на него сошлется пользователь или activity.
+ * Очистка запускается по расписанию каждые {@code imagePurgeIntervalMs} мс и по запросу администратора.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ImageCleanupService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageCleanupService.class);
+
+    static final String REFERENCED_FILES =
+            "SELECT avatar_file_name FROM usr WHERE avatar_file_name IS NOT NULL " +
+            "UNION SELECT activity_file_name FROM activity WHERE activity_file_name IS NOT NULL";
+
+    private final ImageStorageService imageStorageService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${dwarfsframework.app.imagePurgeGraceMs:86400000}")
+    private long graceMs;
+
+    @Value("${dwarfsframework.app.imagePurgeEnabled:true}")
+    private boolean purgeEnabled;
+
+    @Autowired
+    public ImageCleanupService(ImageStorageService imageStorageService, JdbcTemplate jdbcTemplate) {
+        this.imageStorageService = imageStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Удаляет файлы без ссылок и остатки прерванных загрузок.
+     * @return количество и объем удаленных файлов и время очистки
+     */
+    public ImagePurgeResponse purgeUnreferencedImages() {
+        long start = System.nanoTime();
+        long cutoff = System.currentTimeMillis() - graceMs;
+
+        Set<String> referenced = new HashSet<>();
+        jdbcTemplate.query(REFERENCED_FILES, (RowCallbackHandler) rs -> referenced.add(rs.getString(1)));
+
+        long purged = 0;
+        long freedBytes = 0;
+        for (StoredImage image : imageStorageService.list()) {
+            if (referenced.contains(image.getFileName()) || image.getLastModified() >= cutoff) {
+                continue;
+            }
+            if (imageStorageService.deleteIfNotModifiedSince(image, cutoff)) {
+                purged++;
+                freedBytes += image.getSize();
+            }
+        }
+        imageStorageService.purgeTemporary(cutoff);
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        String message = purged == 0
+                ? "All images are in use!"
+                : "Unused images was deleted successfully!";
+        return new ImagePurgeResponse(message, purged, freedBytes, elapsedMs);
+    }
+
+    /**
+     * Фоновая очистка хранилища по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${dwarfsframework.app.imagePurgeIntervalMs:86400000}",
+            initialDelayString = "${dwarfsframework.app.imagePurgeIntervalMs:86400000}")
+    public void scheduledPurge() {
+        if (!purgeEnabled) {
+            return;
+        }
+        try {
+            ImagePurgeResponse result = purgeUnreferencedImages();
+            logger.info("Unused images purged: {} ({} bytes) in {} ms",
+                    result.getPurged(), result.getFreedBytes(), result.getElapsedMs());
+        } catch (Exception e) {
+            logger.error("Cannot purge unused images: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.exceptions.FileStorageException;
+import com.angrydwarfs.framework.exceptions.PayloadTooLargeException;
+import com.angrydwarfs.framework.exceptions.UnsupportedMediaTypeException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище изображений на диске в каталоге {@code upload.path}, адресуемое по содержимому.
+ * Имя файла - SHA-256 содержимого и расширение по типу изображения, файл лежит в каталоге
+ * {@code upload.path/ab/cd/}, где ab и cd - первые байты хэша. Повторная загрузка тех же байт
+ * не создает новый файл, а возвращает имя уже сохраненного.
+ * Контейнер сервлетов сохраняет загружаемый файл во временный каталог {@code upload.path/.tmp} на том же диске,
+ * откуда файл переносится в хранилище без копирования в память. Тип файла определяется по сигнатуре содержимого.
+ * Уменьшенные копии лежат рядом с исходным файлом под именем {@code <хэш>-<размер>.<jpg|png>}.
+ * Файлы, на которые не ссылаются пользователи и activity, удаляет {@link ImageCleanupService}.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ImageStorageService {
+    static final String TMP_DIR = ".tmp";
+
+    private static final Pattern FILE_NAME = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif|webp)");
+    private static final Pattern LEGACY_FILE_NAME = Pattern.compile("[0-9a-f\\-]{36}\\.(jpg|png|gif|webp)");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String[] VARIANT_EXTENSIONS = {"jpg", "png"};
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private final String uploadPath;
+    private final long maxSize;
+
+    private Path root;
+    private Path tmp;
+
+    /**
+     * @param uploadPath - каталог хранилища
+     * @param maxSize - максимальный размер загружаемого файла в байтах
+     * @param meterRegistry - реестр метрик
+     */
+    @Autowired
+    public ImageStorageService(@Value("${upload.path}") String uploadPath,
+                               @Value("${dwarfsframework.app.imageMaxSize:5242880}") long maxSize,
+                               MeterRegistry meterRegistry) {
+        this.uploadPath = uploadPath;
+        this.maxSize = maxSize;
+        FunctionCounter.builder("image.store", stored, AtomicLong::get)
+                .tag("result", "stored")
+                .register(meterRegistry);
+        FunctionCounter.builder("image.store", deduplicated, AtomicLong::get)
+                .tag("result", "deduplicated")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(uploadPath).toAbsolutePath().normalize();
+        tmp = root.resolve(TMP_DIR);
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot create upload directory " + root + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сохраняет изображение в хранилище. Файл читается один раз - для проверки сигнатуры и подсчета хэша.
+     * @param file - загруженный файл
+     * @return имя файла в хранилище
+     * @throws PayloadTooLargeException - если файл больше {@code imageMaxSize} байт
+     * @throws UnsupportedMediaTypeException - если файл не jpeg, png, gif или webp изображение
+     * @throws FileStorageException - ошибка записи файла
+     */
+    public String store(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new UnsupportedMediaTypeException("File is empty");
+        }
+        if (file.getSize() > maxSize) {
+            throw new PayloadTooLargeException("File size exceeds " + maxSize + " bytes");
+        }
+
+        ImageType type;
+        String hash;
+        try (DigestInputStream input = new DigestInputStream(file.getInputStream(), sha256())) {
+            type = ImageType.detect(readHeader(input));
+            if (type == null) {
+                throw new UnsupportedMediaTypeException("Only jpeg, png, gif and webp images are allowed");
+            }
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) >= 0) {
+                // хэш считается при чтении
+            }
+            hash = toHex(input.getMessageDigest().digest());
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot read uploaded file: " + e.getMessage());
+        }
+
+        String fileName = hash + "." + type.extension;
+        Path target = resolve(fileName);
+        try {
+            if (Files.exists(target)) {
+                // продлевает срок жизни файла, чтобы очистка не удалила его до сохранения ссылки
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                deduplicated.incrementAndGet();
+                return fileName;
+            }
+        } catch (NoSuchFileException e) {
+            // файл удален очисткой, сохраняется заново
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot store file: " + e.getMessage());
+        }
+
+        // имя временного файла уникально - одинаковые файлы могут загружаться одновременно
+        Path spooled = tmp.resolve(UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            file.transferTo(spooled.toFile());
+            if (Files.exists(target)) {
+                // тот же файл сохранен параллельной загрузкой, временный файл удаляется ниже
+                deduplicated.incrementAndGet();
+            } else {
+                Files.move(spooled, target, StandardCopyOption.ATOMIC_MOVE);
+                stored.incrementAndGet();
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot store file: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(spooled);
+            } catch (IOException ignored) {
+                // файл будет удален очисткой временного каталога
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * @param fileName - имя файла в хранилище
+     * @return файл изображения, пусто - если имя не из хранилища или файла нет
+     */
+    public Optional<StoredImage> find(String fileName) {
+        if (fileName == null) {
+            return Optional.empty();
+        }
+        boolean contentAddressed = FILE_NAME.matcher(fileName).matches();
+        if (!contentAddressed && !LEGACY_FILE_NAME.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        return read(contentAddressed ? resolve(fileName) : root.resolve(fileName), fileName, contentAddressed);
+    }
+
+    /**
+     * Список всех файлов хранилища, включая файлы с именами до перехода на хранение по хэшу.
+     * @return файлы изображений
+     */
+    public List<StoredImage> list() {
+        List<StoredImage> images = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 3)) {
+            paths.filter(path -> !path.startsWith(tmp))
+                    .forEach(path -> {
+                        String fileName = path.getFileName().toString();
+                        if (FILE_NAME.matcher(fileName).matches() && path.equals(resolve(fileName))) {
+                            read(path, fileName, true).ifPresent(images::add);
+                        } else if (LEGACY_FILE_NAME.matcher(fileName).matches() && root.equals(path.getParent())) {
+                            read(path, fileName, false).ifPresent(images::add);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot list upload directory " + root + ": " + e.getMessage());
+        }
+        return images;
+    }
+
+    /**
+     * Удаляет файл из хранилища.
+     * @param image - файл изображения
+     * @return true - если файл удален
+     */
+    public boolean delete(StoredImage image) {
+        try {
+            boolean deleted = Files.deleteIfExists(image.getPath());
+            if (FILE_NAME.matcher(image.getFileName()).matches()) {
+                String hash = image.getFileName().substring(0, image.getFileName().lastIndexOf('.'));
+                try (DirectoryStream<Path> variants = Files.newDirectoryStream(image.getPath().getParent(), hash + "-*")) {
+                    for (Path variant : variants) {
+                        Files.deleteIfExists(variant);
+                    }
+                }
+            }
+            return deleted;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Удаляет файл из хранилища, если он не изменялся с указанного времени. Время изменения перечитывается
+     * перед удалением - повторная загрузка того же файла после составления списка продлевает его срок жизни.
+     * @param image - файл изображения
+     * @param cutoff - файл удаляется, если изменен раньше этого времени
+     * @return true - если файл удален
+     */
+    public boolean deleteIfNotModifiedSince(StoredImage image, long cutoff) {
+        try {
+            if (Files.getLastModifiedTime(image.getPath()).toMillis() >= cutoff) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return delete(image);
+    }
+
+    /**
+     * Уменьшенная копия изображения, созданная {@link ImageVariantService}.
+     * @param fileName - имя файла в хранилище
+     * @param size - наибольшая сторона копии в пикселях
+     * @return файл копии, пусто - если копии нет
+     */
+    public Optional<StoredImage> findVariant(String fileName, int size) {
+        if (fileName == null || !FILE_NAME.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        Path original = resolve(fileName);
+        String hash = fileName.substring(0, fileName.lastIndexOf('.'));
+        for (String extension : VARIANT_EXTENSIONS) {
+            String variantName = hash + "-" + size + "." + extension;
+            Optional<StoredImage> variant = read(original.resolveSibling(variantName), variantName, false)
+                    .map(image -> new StoredImage(variantName, image.getPath(), image.getContentType(),
+                            image.getSize(), image.lastModified, "\"" + hash + "-" + size + "\""));
+            if (variant.isPresent()) {
+                return variant;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return абсолютный путь временного каталога {@code upload.path/.tmp}
+     */
+    public Path getTemporaryDirectory() {
+        return tmp;
+    }
+
+    /**
+     * Создает временный файл для записи уменьшенной копии.
+     * @return путь временного файла в каталоге {@code upload.path/.tmp}
+     */
+    public Path createTemporaryFile() {
+        try {
+            return Files.createTempFile(tmp, "variant-", ".tmp");
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot create temporary file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Переносит записанную уменьшенную копию в каталог исходного файла.
+     * @param temporary - временный файл копии
+     * @param fileName - имя исходного файла в хранилище
+     * @param size - наибольшая сторона копии в пикселях
+     * @param extension - jpg или png
+     */
+    public void storeVariant(Path temporary, String fileName, int size, String extension) {
+        String hash = fileName.substring(0, fileName.lastIndexOf('.'));
+        Path target = resolve(fileName).resolveSibling(hash + "-" + size + "." + extension);
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot store image variant: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет из временного каталога файлы, оставшиеся от прерванных загрузок.
+     * @param olderThanMillis - удаляются файлы, измененные раньше этого времени
+     * @return количество удаленных файлов
+     */
+    public int purgeTemporary(long olderThanMillis) {
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmp)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < olderThanMillis && Files.deleteIfExists(file)) {
+                        purged++;
+                    }
+                } catch (IOException ignored) {
+                    // файл удален или занят другой загрузкой
+                }
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("Cannot list upload directory " + tmp + ": " + e.getMessage());
+        }
+        return purged;
+    }
+
+    /**
+     * Путь файла в хранилище - {@code ab/cd/abcd...}.
+     */
+    private Path resolve(String fileName) {
+        return root.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+
+    private Optional<StoredImage> read(Path path, String fileName, boolean contentAddressed) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+            String etag = contentAddressed
+                    ? fileName.substring(0, fileName.lastIndexOf('.'))
+                    : Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis() / 1000);
+            return Optional.of(new StoredImage(fileName, path, ImageType.byExtension(extension).contentType,
+                    attributes.size(), attributes.lastModifiedTime().toMillis(), "\"" + etag + "\""));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] readHeader(InputStream input) throws IOException {
+        byte[] header = new byte[12];
+        int read = 0;
+        while (read < header.length) {
+            int count = input.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return header;
+    }
+
+    /**
+     * Допустимые типы изображений и их сигнатуры.
+     */
+    enum ImageType {
+        JPEG("jpg", "image/jpeg"),
+        PNG("png", "image/png"),
+        GIF("gif", "image/gif"),
+        WEBP("webp", "image/webp");
+
+        private final String extension;
+        private final String contentType;
+
+        ImageType(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        static ImageType detect(byte[] h) {
+            if ((h[0] & 0xFF) == 0xFF && (h[1] & 0xFF) == 0xD8 && (h[2] & 0xFF) == 0xFF) {
+                return JPEG;
+            }
+            if ((h[0] & 0xFF) == 0x89 && h[1] == 'P' && h[2] == 'N' && h[3] == 'G') {
+                return PNG;
+            }
+            if (h[0] == 'G' && h[1] == 'I' && h[2] == 'F' && h[3] == '8') {
+                return GIF;
+            }
+            if (h[0] == 'R' && h[1] == 'I' && h[2] == 'F' && h[3] == 'F'
+                    && h[8] == 'W' && h[9] == 'E' && h[10] == 'B' && h[11] == 'P') {
+                return WEBP;
+            }
+            return null;
+        }
+
+        static ImageType byExtension(String extension) {
+            for (ImageType type : values()) {
+                if (type.extension.equals(extension)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown image extension: " + extension);
+        }
+    }
+
+    /**
+     * Файл изображения в хранилище.
+     */
+    public static final class StoredImage {
+        private final String fileName;
+        private final Path path;
+        private final String contentType;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+
+        StoredImage(String fileName, Path path, String contentType, long size, long lastModified, String etag) {
+            this.fileName = fileName;
+            this.path = path;
+            this.contentType = contentType;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return время изменения файла в мс, с точностью до секунды - как в заголовке Last-Modified
+         */
+        public long getLastModified() {
+            return lastModified / 1000 * 1000;
+        }
+
+        /**
+         * Сильный ETag - хэш содержимого, для файлов до перехода на хранение по хэшу - размер и время изменения.
+         */
+        public String getETag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.config.BoundedCache;
+import com.angrydwarfs.framework.service.ImageStorageService.StoredImage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое создание уменьшенных копий изображений.
+ * После загрузки имя файла ставится в ограниченную очередь {@code imageVariantQueueSize}, пул из
+ * {@code imageVariantThreads} потоков создает копии с наибольшей стороной из {@code imageVariantSizes} пикселей:
+ * jpeg для непрозрачных изображений, png для изображений с прозрачностью. Копии больше исходного изображения
+ * не создаются. При заполнении очереди задача отбрасывается - клиент получает исходный файл без долгого
+ * кэширования, и создание копии ставится в очередь повторно при следующем запросе.
+ * Наибольшая сторона исходного изображения запоминается по имени файла (хэшу содержимого) в кэше
+ * {@code imageVariantCacheSize} записей при создании копий или первом запросе, поэтому заголовок файла
+ * не читается при каждом запросе. Имя файла - хэш содержимого, поэтому запомненный размер не устаревает.
+ * Глубина очереди, время обработки, отказы и ошибки публикуются в метриках image.variants.*.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ImageVariantService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final ImageStorageService imageStorageService;
+    private final MeterRegistry meterRegistry;
+
+    private BoundedCache<String, Integer> largestSides;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @Value("${dwarfsframework.app.imageVariantSizes:64,256,720}")
+    private int[] sizes;
+
+    @Value("${dwarfsframework.app.imageVariantThreads:2}")
+    private int threads;
+
+    @Value("${dwarfsframework.app.imageVariantQueueSize:1000}")
+    private int queueSize;
+
+    @Value("${dwarfsframework.app.imageVariantCacheSize:10000}")
+    private int cacheSize;
+
+    private ThreadPoolExecutor executor;
+    private Timer processingTimer;
+
+    @Autowired
+    public ImageVariantService(ImageStorageService imageStorageService, MeterRegistry meterRegistry) {
+        this.imageStorageService = imageStorageService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        sizes = Arrays.stream(sizes).sorted().distinct().toArray();
+        largestSides = new BoundedCache<>(cacheSize);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("image.variants.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("image.variants.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("image.variants.rejected", rejected, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("image.variants.failed", failed, AtomicLong::get)
+                .register(meterRegistry);
+        processingTimer = Timer.builder("image.variants.processing")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ставит создание копий изображения в очередь. Повторная постановка того же файла, пока он в очереди, игнорируется.
+     * @param fileName - имя файла в хранилище
+     */
+    public void submit(String fileName) {
+        if (!queued.add(fileName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    processingTimer.record(() -> generate(fileName));
+                } finally {
+                    queued.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(fileName);
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Подбирает копию изображения для отображения в размере {@code size} пикселей -
+     * наименьшую копию не меньше запрошенного размера. Если такой копии не будет - размер больше наибольшей копии
+     * или не меньше исходного изображения - возвращается исходный файл. Если копия еще не создана,
+     * ее создание повторно ставится в очередь - задача могла быть отброшена при заполнении очереди.
+     * Пока копия в очереди, а также для уже известного размера исходного изображения заголовок файла не читается.
+     * @param original - исходный файл в хранилище
+     * @param size - требуемая наибольшая сторона изображения в пикселях
+     * @return файл копии или исходный файл, пусто - если копия еще не создана
+     */
+    public Optional<StoredImage> find(StoredImage original, int size) {
+        for (int variantSize : sizes) {
+            if (variantSize >= size) {
+                Optional<StoredImage> variant = imageStorageService.findVariant(original.getFileName(), variantSize);
+                if (variant.isPresent()) {
+                    return variant;
+                }
+                Integer largest = largestSides.get(original.getFileName(), 0L);
+                if (largest == null) {
+                    if (queued.contains(original.getFileName())) {
+                        return Optional.empty();
+                    }
+                    largest = readLargestSide(original);
+                    largestSides.put(original.getFileName(), largest, Long.MAX_VALUE);
+                }
+                if (variantSize >= largest) {
+                    return Optional.of(original);
+                }
+                submit(original.getFileName());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(original);
+    }
+
+    /**
+     * Наибольшая сторона изображения по заголовку файла, без декодирования пикселей.
+     * @return размер в пикселях, 0 - если изображение не читается и копии не создаются
+     */
+    private static int readLargestSide(StoredImage image) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.getPath().toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return Math.max(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Создает недостающие копии изображения в текущем потоке.
+     * @param fileName - имя файла в хранилище
+     */
+    public void generate(String fileName) {
+        Optional<StoredImage> found = imageStorageService.find(fileName);
+        if (!found.isPresent()) {
+            return;
+        }
+        StoredImage image = found.get();
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.getPath().toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int largest = Math.max(width, height);
+                largestSides.put(fileName, largest, Long.MAX_VALUE);
+
+                int largestVariant = 0;
+                for (int size : sizes) {
+                    if (size < largest && !imageStorageService.findVariant(fileName, size).isPresent()) {
+                        largestVariant = size;
+                    }
+                }
+                if (largestVariant == 0) {
+                    return;
+                }
+
+                // декодируется каждый n-й пиксель, но не меньше удвоенного размера наибольшей копии
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, largest / (largestVariant * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage source = reader.read(0, param);
+
+                for (int i = sizes.length - 1; i >= 0; i--) {
+                    int size = sizes[i];
+                    if (size > largestVariant || imageStorageService.findVariant(fileName, size).isPresent()) {
+                        continue;
+                    }
+                    source = scale(source, size);
+                    write(source, fileName, size);
+                }
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.warn("Cannot create variants of image {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * Уменьшает изображение последовательными шагами не более чем вдвое - билинейная интерполяция
+     * на каждом шаге дает качество, близкое к бикубической, при меньших затратах.
+     * Копии создаются от большей к меньшей, поэтому следующая копия уменьшается из предыдущей.
+     */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        int largest = Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round((double) source.getWidth() * size / largest));
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * size / largest));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage result = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(result, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            result = step;
+        } while (width != targetWidth || height != targetHeight);
+        return result;
+    }
+
+    private void write(BufferedImage image, String fileName, int size) throws IOException {
+        boolean alpha = image.getColorModel().hasAlpha();
+        String extension = alpha ? "png" : "jpg";
+        ImageWriter writer = ImageIO.getImageWritersBySuffix(extension).next();
+        Path temporary = imageStorageService.createTemporaryFile();
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+                writer.setOutput(output);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (!alpha) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(JPEG_QUALITY);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            imageStorageService.storeVariant(temporary, fileName, size, extension);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отложенная запись присутствия пользователей (USER_LAST_VISITED_DATE).
+ * Отметки времени копятся в памяти - на пользователя хранится только последняя,
+ * и раз в {@code presenceFlushIntervalMs} мс записываются в таблицу USR одним пакетным запросом.
+ * Дата последнего входа может отставать на интервал записи. При остановке приложения накопленные отметки записываются.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class PresenceService {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    private static final String UPDATE_LAST_VISITED = "UPDATE usr SET user_last_visited_date = ? " +
+            "WHERE user_id = ? AND (user_last_visited_date IS NULL OR user_last_visited_date < ?)";
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${dwarfsframework.app.presenceBatchSize:500}")
+    private int batchSize;
+
+    @Autowired
+    public PresenceService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("presence.pending", pending, Map::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("presence.flushed", flushed, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("presence.flush.failures", failures, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отмечает присутствие пользователя текущим временем.
+     * @param userId - id пользователя
+     */
+    public void touch(Long userId) {
+        touch(userId, LocalDateTime.now());
+    }
+
+    /**
+     * Отмечает присутствие пользователя. Из нескольких отметок сохраняется самая поздняя.
+     * @param userId - id пользователя
+     * @param visitedDate - время присутствия
+     */
+    public void touch(Long userId, LocalDateTime visitedDate) {
+        if (userId == null || visitedDate == null) {
+            return;
+        }
+        pending.merge(userId, visitedDate, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    /**
+     * @return количество пользователей, отметки которых еще не записаны в БД.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return количество отметок, записанных в БД.
+     */
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    /**
+     * Записывает накопленные отметки в БД пакетами по {@code presenceBatchSize} строк.
+     * Отметка удаляется из очереди, только если после чтения ее не заменила более поздняя.
+     * При ошибке записи отметки возвращаются в очередь.
+     * @return количество записанных отметок
+     */
+    @Scheduled(fixedDelayString = "${dwarfsframework.app.presenceFlushIntervalMs:5000}",
+            initialDelayString = "${dwarfsframework.app.presenceFlushIntervalMs:5000}")
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            Long userId = entry.getKey();
+            LocalDateTime visitedDate = entry.getValue();
+            if (pending.remove(userId, visitedDate)) {
+                Timestamp timestamp = Timestamp.valueOf(visitedDate);
+                batch.add(new Object[] {timestamp, userId, timestamp});
+            }
+        }
+
+        int written = 0;
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Object[]> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_LAST_VISITED, chunk);
+                written += chunk.size();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                logger.error("Cannot flush presence updates: {}", e.getMessage());
+                for (Object[] row : chunk) {
+                    touch((Long) row[1], ((Timestamp) row[0]).toLocalDateTime());
+                }
+            }
+        }
+        flushed.addAndGet(written);
+        return written;
+    }
+
+    /**
+     * Записывает накопленные отметки при остановке приложения.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.exceptions.ResourceNotFoundException;
+import com.angrydwarfs.framework.models.Enums.ELevel;
+import com.angrydwarfs.framework.models.Enums.EMainRole;
+import com.angrydwarfs.framework.models.Enums.EStatus;
+import com.angrydwarfs.framework.models.Enums.ESubRole;
+import com.angrydwarfs.framework.models.Enums.ETag;
+import com.angrydwarfs.framework.models.Level;
+import com.angrydwarfs.framework.models.MainRole;
+import com.angrydwarfs.framework.models.Status;
+import com.angrydwarfs.framework.models.SubRole;
+import com.angrydwarfs.framework.models.Tag;
+import com.angrydwarfs.framework.repository.LevelRepository;
+import com.angrydwarfs.framework.repository.MainRoleRepository;
+import com.angrydwarfs.framework.repository.StatusRepository;
+import com.angrydwarfs.framework.repository.SubRoleRepository;
+import com.angrydwarfs.framework.repository.TagRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Реестр справочников - роли, дополнительные роли, статусы, тэги и уровни.
+ * Хранит неизменяемые {@link EnumMap} соответствия значения перечисления и id строки справочника,
+ * загружается при старте и обновляется по запросу администратора или при отсутствии значения.
+ * Отсутствие значения перечитывает справочники не чаще раза в {@code referenceDataMissRefreshMs} мс,
+ * остальные запросы отсутствующего значения сразу получают {@link ResourceNotFoundException}.
+ * Сущности справочников возвращаются ссылками {@code getOne} без запроса к БД,
+ * сами строки при необходимости читаются из кэша второго уровня Hibernate.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class ReferenceDataRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataRegistry.class);
+
+    private final MainRoleRepository mainRoleRepository;
+    private final SubRoleRepository subRoleRepository;
+    private final StatusRepository statusRepository;
+    private final TagRepository tagRepository;
+    private final LevelRepository levelRepository;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Value("${dwarfsframework.app.referenceDataMissRefreshMs:60000}")
+    private long missRefreshIntervalMs;
+
+    private volatile Snapshot snapshot = new Snapshot();
+    private volatile long lastMissRefreshAt;
+
+    @Autowired
+    public ReferenceDataRegistry(
+            MainRoleRepository mainRoleRepository,
+            SubRoleRepository subRoleRepository,
+            StatusRepository statusRepository,
+            TagRepository tagRepository,
+            LevelRepository levelRepository,
+            EntityManagerFactory entityManagerFactory
+    ) {
+        this.mainRoleRepository = mainRoleRepository;
+        this.subRoleRepository = subRoleRepository;
+        this.statusRepository = statusRepository;
+        this.tagRepository = tagRepository;
+        this.levelRepository = levelRepository;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * Перечитывает справочники из БД и очищает их области кэша второго уровня.
+     */
+    public synchronized void refresh() {
+        Snapshot loaded = new Snapshot();
+        for (MainRole role : mainRoleRepository.findAll()) {
+            loaded.mainRoles.put(role.getMainRoleName(), role.getId());
+        }
+        for (SubRole role : subRoleRepository.findAll()) {
+            loaded.subRoles.put(role.getSubRoleName(), role.getId());
+        }
+        for (Status status : statusRepository.findAll()) {
+            loaded.statuses.put(status.getUserStatus(), status.getId());
+        }
+        for (Tag tag : tagRepository.findAll()) {
+            loaded.tags.put(tag.getTagName(), tag.getId());
+        }
+        for (Level level : levelRepository.findAll()) {
+            loaded.levels.put(level.getLevelName(), level.getId());
+        }
+        snapshot = loaded.freeze();
+
+        Cache cache = entityManagerFactory.getCache();
+        cache.evict(MainRole.class);
+        cache.evict(SubRole.class);
+        cache.evict(Status.class);
+        cache.evict(Tag.class);
+        cache.evict(Level.class);
+        logger.info("Reference data loaded: {} roles, {} sub roles, {} statuses, {} tags, {} levels",
+                snapshot.mainRoles.size(), snapshot.subRoles.size(), snapshot.statuses.size(),
+                snapshot.tags.size(), snapshot.levels.size());
+    }
+
+    public MainRole mainRole(EMainRole name) {
+        return mainRoleRepository.getOne(id(name, s -> s.mainRoles));
+    }
+
+    public SubRole subRole(ESubRole name) {
+        return subRoleRepository.getOne(id(name, s -> s.subRoles));
+    }
+
+    public Status status(EStatus name) {
+        return statusRepository.getOne(id(name, s -> s.statuses));
+    }
+
+    public Tag tag(ETag name) {
+        return tagRepository.getOne(id(name, s -> s.tags));
+    }
+
+    /**
+     * @param name - тэг
+     * @return id строки тэга без обращения к БД - для пакетной записи через jdbc
+     */
+    public Integer tagId(ETag name) {
+        return id(name, s -> s.tags);
+    }
+
+    public Level level(ELevel name) {
+        return levelRepository.getOne(id(name, s -> s.levels));
+    }
+
+    /**
+     * @param name - значение справочника
+     * @param table - справочник в реестре
+     * @return id строки справочника, при отсутствии значения реестр перечитывается не чаще раза в интервал
+     * @throws ResourceNotFoundException - если значения нет в БД
+     */
+    private <E extends Enum<E>> Integer id(E name, Function<Snapshot, Map<E, Integer>> table) {
+        Integer id = table.apply(snapshot).get(name);
+        if (id == null) {
+            refreshOnMiss();
+            id = table.apply(snapshot).get(name);
+            if (id == null) {
+                throw new ResourceNotFoundException(name.name());
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Перечитывает справочники при отсутствии значения, если с прошлого такого обновления прошло
+     * не меньше {@code referenceDataMissRefreshMs} мс. Потоки, ждавшие обновления другого потока, реестр повторно не читают.
+     */
+    private void refreshOnMiss() {
+        long now = System.currentTimeMillis();
+        if (now - lastMissRefreshAt < missRefreshIntervalMs) {
+            return;
+        }
+        synchronized (this) {
+            if (now - lastMissRefreshAt < missRefreshIntervalMs) {
+                return;
+            }
+            lastMissRefreshAt = System.currentTimeMillis();
+            refresh();
+        }
+    }
+
+    private static final class Snapshot {
+        private Map<EMainRole, Integer> mainRoles = new EnumMap<>(EMainRole.class);
+        private Map<ESubRole, Integer> subRoles = new EnumMap<>(ESubRole.class);
+        private Map<EStatus, Integer> statuses = new EnumMap<>(EStatus.class);
+        private Map<ETag, Integer> tags = new EnumMap<>(ETag.class);
+        private Map<ELevel, Integer> levels = new EnumMap<>(ELevel.class);
+
+        private Snapshot freeze() {
+            mainRoles = Collections.unmodifiableMap(mainRoles);
+            subRoles = Collections.unmodifiableMap(subRoles);
+            statuses = Collections.unmodifiableMap(statuses);
+            tags = Collections.unmodifiableMap(tags);
+            levels = Collections.unmodifiableMap(levels);
+            return this;
+        }
+    }
+}
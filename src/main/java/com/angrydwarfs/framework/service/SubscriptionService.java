@@ -16,31 +16,90 @@
 
 package com.angrydwarfs.framework.service;
 
-import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.payload.response.SubscriptionResponse;
+import com.angrydwarfs.framework.payload.response.UserShortResponse;
 import com.angrydwarfs.framework.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Set;
+import java.util.List;
 
+/**
+ * Подписки пользователей. Подписка и отписка - одна вставка или удаление строки в user_subscriptions
+ * без загрузки коллекций подписчиков, количество подписчиков и подписок хранится в счетчиках пользователя.
+ * @version 0.002
+ * @author habatoo
+ */
 @Service
 public class SubscriptionService {
     private final UserRepository userRepository;
+    private final TimelineService timelineService;
 
     @Autowired
-    public SubscriptionService(UserRepository userRepository) {
+    public SubscriptionService(UserRepository userRepository, TimelineService timelineService) {
         this.userRepository = userRepository;
+        this.timelineService = timelineService;
     }
 
-    public User changeSubscription(User channel, User subscriber) {
-        Set<User> subscribers = channel.getSubscribers();
-
-        if (subscribers.contains(subscriber)) {
-            subscribers.remove(subscriber);
+    /**
+     * Переключает подписку - отписывает, если подписка есть, иначе подписывает.
+     * @param channelId - id пользователя, на которого подписываются
+     * @param subscriberId - id подписчика
+     * @return новый статус подписки и количество подписчиков
+     */
+    @Transactional
+    public SubscriptionResponse changeSubscription(Long channelId, Long subscriberId) {
+        boolean subscribed;
+        if (userRepository.deleteSubscription(channelId, subscriberId) > 0) {
+            addCounters(channelId, subscriberId, -1);
+            timelineService.removeChannel(channelId, subscriberId);
+            subscribed = false;
         } else {
-            subscribers.add(subscriber);
+            if (userRepository.insertSubscription(channelId, subscriberId) > 0) {
+                addCounters(channelId, subscriberId, 1);
+            }
+            subscribed = true;
         }
 
-        return userRepository.save(channel);
+        return new SubscriptionResponse(channelId, subscribed, userRepository.findSubscribersCount(channelId));
+    }
+
+    /**
+     * Удаляет все подписки и ленту пользователя перед удалением пользователя и исправляет счетчики связанных пользователей.
+     * @param userId - id пользователя
+     */
+    @Transactional
+    public void removeAllSubscriptions(Long userId) {
+        userRepository.decrementChannelsOfSubscriber(userId);
+        userRepository.decrementSubscribersOfChannel(userId);
+        userRepository.deleteAllSubscriptions(userId);
+        timelineService.removeUser(userId);
+    }
+
+    /**
+     * Страница подписчиков пользователя по возрастанию id.
+     * @param channelId - id пользователя
+     * @param afterId - id последнего подписчика предыдущей страницы, 0 - для первой страницы
+     * @param limit - размер страницы
+     */
+    public List<UserShortResponse> findSubscribers(Long channelId, long afterId, int limit) {
+        return userRepository.findSubscribersAfter(channelId, afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Страница подписок пользователя по возрастанию id.
+     * @param subscriberId - id пользователя
+     * @param afterId - id последней подписки предыдущей страницы, 0 - для первой страницы
+     * @param limit - размер страницы
+     */
+    public List<UserShortResponse> findSubscriptions(Long subscriberId, long afterId, int limit) {
+        return userRepository.findSubscriptionsAfter(subscriberId, afterId, PageRequest.of(0, limit));
+    }
+
+    private void addCounters(Long channelId, Long subscriberId, long delta) {
+        userRepository.addSubscribersCount(channelId, delta);
+        userRepository.addSubscriptionsCount(subscriberId, delta);
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.models.Activity;
+import com.angrydwarfs.framework.payload.response.ActivityResponse;
+import com.angrydwarfs.framework.payload.response.PageResponse;
+import com.angrydwarfs.framework.repository.TimelineRepository;
+import com.angrydwarfs.framework.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Домашняя лента пользователя - activity каналов, на которые он подписан.
+ * Новая activity копируется в ленты подписчиков при создании (fan-out on write). Длина ленты ограничивается
+ * {@code timelineMaxSize} фоновой очисткой каждые {@code timelineTrimIntervalMs} мс - очищаются только ленты
+ * подписчиков каналов, activity которых копировались с прошлой очистки, между очистками лента может быть длиннее,
+ * на чтение это не влияет, страница ленты читается по индексу. Для каналов с числом подписчиков больше
+ * {@code timelineFanoutThreshold} копирование не выполняется, activity отмечается и добавляется в ленту при чтении
+ * (fan-out on read), в том числе после того, как число подписчиков канала стало меньше порога.
+ * Время записи публикуется в метрике timeline.fanout (mode=push - копирование в ленты, mode=pull - канал
+ * обрабатывается при чтении, каналы без подписчиков не учитываются), время чтения - в метрике timeline.read, с процентилями 50/95/99.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class TimelineService {
+    private static final Logger logger = LoggerFactory.getLogger(TimelineService.class);
+
+    private final TimelineRepository timelineRepository;
+    private final UserRepository userRepository;
+    private final Timer fanOutTimer;
+    private final Timer fanOutSkippedTimer;
+    private final Timer readTimer;
+    // каналы, activity которых копировались в ленты с прошлой очистки
+    private final Set<Long> trimChannels = ConcurrentHashMap.newKeySet();
+
+    @Value("${dwarfsframework.app.timelineMaxSize:1000}")
+    private int maxSize;
+
+    @Value("${dwarfsframework.app.timelineFanoutThreshold:10000}")
+    private long fanOutThreshold;
+
+    @Autowired
+    public TimelineService(TimelineRepository timelineRepository, UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.timelineRepository = timelineRepository;
+        this.userRepository = userRepository;
+        this.fanOutTimer = timer("timeline.fanout", "push", meterRegistry);
+        this.fanOutSkippedTimer = timer("timeline.fanout", "pull", meterRegistry);
+        this.readTimer = timer("timeline.read", "merge", meterRegistry);
+    }
+
+    /**
+     * Добавляет новую activity в ленты подписчиков автора.
+     * @param activity - сохраненная activity
+     */
+    @Transactional
+    public void fanOut(Activity activity) {
+        long start = System.nanoTime();
+        Long channelId = activity.getUserActivities().getId();
+        Long subscribers = userRepository.findSubscribersCount(channelId);
+        if (subscribers == null || subscribers == 0) {
+            return;
+        }
+        if (subscribers > fanOutThreshold) {
+            timelineRepository.markPull(activity.getId());
+            fanOutSkippedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        timelineRepository.fanOut(channelId, activity.getId(), activity.getCreationDate());
+        trimChannels.add(channelId);
+        fanOutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Обрезает до {@code timelineMaxSize} записей ленты подписчиков каналов, activity которых копировались
+     * с прошлой очистки, каждая лента - отдельный запрос. Стоимость очистки зависит от числа копирований,
+     * а не от размера таблицы лент. Каналы, накопленные до перезапуска сервера, обрезаются при следующей activity.
+     * @return количество удаленных записей
+     */
+    public long trimTimelines() {
+        Set<Long> userIds = new HashSet<>();
+        Iterator<Long> channels = trimChannels.iterator();
+        while (channels.hasNext()) {
+            Long channelId = channels.next();
+            channels.remove();
+            userIds.addAll(timelineRepository.findSubscriberIds(channelId));
+        }
+
+        long trimmed = 0;
+        for (Long userId : userIds) {
+            trimmed += timelineRepository.trimUser(userId, maxSize);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Фоновая очистка лент по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${dwarfsframework.app.timelineTrimIntervalMs:600000}",
+            initialDelayString = "${dwarfsframework.app.timelineTrimIntervalMs:600000}")
+    public void scheduledTrim() {
+        try {
+            long start = System.nanoTime();
+            long trimmed = trimTimelines();
+            logger.info("Timelines trimmed: {} entries in {} ms", trimmed, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Cannot trim timelines: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Страница домашней ленты пользователя.
+     * @param userId - id владельца ленты
+     * @param cursor - курсор предыдущей страницы, null - для первой страницы
+     * @param limit - размер страницы
+     * @return activity страницы и курсор следующей страницы
+     * @throws IllegalArgumentException - если курсор не разобран
+     */
+    public PageResponse<ActivityResponse> findTimeline(Long userId, String cursor, int limit) {
+        ActivityService.Cursor before = ActivityService.Cursor.parse(cursor);
+        return readTimer.record(() -> ActivityService.toPage(
+                timelineRepository.findTimelinePage(userId, before.date, before.id, limit), limit));
+    }
+
+    /**
+     * Удаляет activity из всех лент.
+     * @param activityId - id activity
+     */
+    public void removeActivity(Long activityId) {
+        timelineRepository.deleteByActivity(activityId);
+    }
+
+    /**
+     * Удаляет из ленты подписчика activity канала после отписки.
+     * @param channelId - id канала
+     * @param subscriberId - id подписчика
+     */
+    public void removeChannel(Long channelId, Long subscriberId) {
+        timelineRepository.deleteChannelEntries(channelId, subscriberId);
+    }
+
+    /**
+     * Удаляет ленту пользователя.
+     * @param userId - id владельца ленты
+     */
+    public void removeUser(Long userId) {
+        timelineRepository.deleteByUser(userId);
+    }
+
+    private static Timer timer(String name, String mode, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework.service;
+
+import com.angrydwarfs.framework.payload.response.TokenPurgeResponse;
+import com.angrydwarfs.framework.repository.TokenRepository;
+import com.angrydwarfs.framework.security.jwt.TokenRevocationCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Очистка таблицы TOKENS от токенов с истекшим сроком действия.
+ * Токены удаляются пакетами по {@code tokenPurgeChunkSize} строк, каждый пакет - отдельный запрос и транзакция.
+ * Очистка запускается по расписанию каждые {@code tokenPurgeIntervalMs} мс и по запросу администратора.
+ * @version 0.001
+ * @author habatoo
+ */
+@Service
+public class TokenCleanupService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenCleanupService.class);
+
+    private final TokenRepository tokenRepository;
+    private final TokenRevocationCache tokenRevocationCache;
+
+    @Value("${dwarfsframework.app.tokenPurgeChunkSize:1000}")
+    private int chunkSize;
+
+    @Value("${dwarfsframework.app.tokenPurgeEnabled:true}")
+    private boolean purgeEnabled;
+
+    @Autowired
+    public TokenCleanupService(TokenRepository tokenRepository, TokenRevocationCache tokenRevocationCache) {
+        this.tokenRepository = tokenRepository;
+        this.tokenRevocationCache = tokenRevocationCache;
+    }
+
+    /**
+     * Удаляет все токены с истекшим сроком действия.
+     * @return количество удаленных токенов и время очистки
+     */
+    public TokenPurgeResponse purgeExpiredTokens() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = tokenRepository.deleteExpiredChunk(now, chunkSize);
+            purged += deleted;
+        } while (deleted >= chunkSize);
+        tokenRevocationCache.evictExpired();
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        String message = purged == 0
+                ? "All tokens have valid expiry date!"
+                : "Tokens with expiry date was deleted successfully!";
+        return new TokenPurgeResponse(message, purged, elapsedMs);
+    }
+
+    /**
+     * Фоновая очистка токенов по расписанию.
+     */
+    @Scheduled(fixedDelayString = "${dwarfsframework.app.tokenPurgeIntervalMs:3600000}",
+            initialDelayString = "${dwarfsframework.app.tokenPurgeIntervalMs:3600000}")
+    public void scheduledPurge() {
+        if (!purgeEnabled) {
+            return;
+        }
+        try {
+            TokenPurgeResponse result = purgeExpiredTokens();
+            logger.info("Expired tokens purged: {} in {} ms", result.getPurged(), result.getElapsedMs());
+        } catch (Exception e) {
+            logger.error("Cannot purge expired tokens: {}", e.getMessage());
+        }
+    }
+}
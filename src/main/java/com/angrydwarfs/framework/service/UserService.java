@@ -18,20 +18,25 @@ package com.angrydwarfs.framework.service;
 
 import com.angrydwarfs.framework.exceptions.EmailAlreadyExistsException;
 import com.angrydwarfs.framework.exceptions.UsernameAlreadyExistsException;
+import com.angrydwarfs.framework.models.Enums.EMainRole;
 import com.angrydwarfs.framework.models.MainRole;
 import com.angrydwarfs.framework.models.User;
+import com.angrydwarfs.framework.payload.response.UserSummaryResponse;
 import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.jwt.JwtUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -81,6 +86,29 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Страница кратких данных пользователей по возрастанию id - keyset пагинация без загрузки связей пользователя.
+     * Два запроса на страницу - данные пользователей и имена их ролей.
+     * @param afterId - id последнего пользователя предыдущей страницы, 0 - для первой страницы
+     * @param limit - размер страницы
+     * @return пользователи страницы
+     */
+    public List<UserSummaryResponse> findUserSummaries(long afterId, int limit) {
+        List<UserSummaryResponse> users = userRepository.findSummariesAfter(afterId, PageRequest.of(0, limit));
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        Map<Long, UserSummaryResponse> usersById = new HashMap<>();
+        for (UserSummaryResponse user : users) {
+            usersById.put(user.getId(), user);
+        }
+        for (Object[] row : userRepository.findMainRoleNames(usersById.keySet())) {
+            usersById.get((Long) row[0]).getRoles().add(((EMainRole) row[1]).name());
+        }
+        return users;
+    }
+
     public Optional<User> findByUsername(String username) {
         //log.info("retrieving user {}", username);
         return userRepository.findByUsername(username);
@@ -13,38 +13,233 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.angrydwarfs.framework.service.client;
 
+import com.angrydwarfs.framework.config.BoundedCache;
+import com.angrydwarfs.framework.exceptions.BadRequestException;
+import com.angrydwarfs.framework.exceptions.ServiceUnavailableException;
 import com.angrydwarfs.framework.models.FacebookUser;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.var;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
-import org.springframework.stereotype.Service;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-@Service
+/**
+ * Клиент Facebook Graph API.
+ * Запросы выполняются в отдельном пуле потоков ограниченного размера через пул http соединений
+ * с таймаутами соединения и чтения, поэтому поток сервера не ждет ответа Facebook.
+ * При заполнении очереди пула запрос сразу завершается ошибкой 503.
+ * Данные пользователя кэшируются на {@code cacheTtlMs} мс по хэшу access token в {@link BoundedCache}, одновременные запросы
+ * с одним токеном объединяются в один запрос к Graph API.
+ * Время запросов, попадания в кэш и глубина очереди публикуются в метриках facebook.graph.*.
+ * @version 0.001
+ * @author habatoo
+ */
 public class FacebookClient {
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    private static final String USER_PATH = "/me?fields={fields}&redirect={redirect}&access_token={access_token}";
+    private static final String USER_FIELDS = "email,first_name,last_name,id,picture.width(720).height(720)";
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final String graphApiBase;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final ThreadPoolExecutor executor;
+    private final long cacheTtlMs;
+    private final MeterRegistry meterRegistry;
+
+    private final BoundedCache<String, FacebookUser> users;
+    private final Map<String, CompletableFuture<FacebookUser>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param graphApiBase - адрес Graph API, например https://graph.facebook.com
+     * @param connectTimeoutMs - таймаут установки соединения и ожидания соединения из пула в мс
+     * @param readTimeoutMs - таймаут чтения ответа в мс
+     * @param maxConnections - размер пула соединений и пула потоков
+     * @param queueSize - максимальное количество ожидающих запросов
+     * @param cacheTtlMs - время хранения данных пользователя в кэше в мс, 0 - кэш отключен
+     * @param cacheSize - максимальное количество пользователей в кэше
+     * @param meterRegistry - реестр метрик
+     */
+    public FacebookClient(String graphApiBase, int connectTimeoutMs, int readTimeoutMs, int maxConnections,
+                          int queueSize, long cacheTtlMs, int cacheSize, MeterRegistry meterRegistry) {
+        this.graphApiBase = graphApiBase;
+        this.cacheTtlMs = cacheTtlMs;
+        this.users = new BoundedCache<>(cacheSize);
+        this.meterRegistry = meterRegistry;
+
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .evictExpiredConnections()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConnections, maxConnections, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "facebook-graph-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("facebook.graph.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("facebook.graph.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("facebook.graph.rejected", rejected, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("facebook.graph.cache", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("facebook.graph.cache", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("facebook.graph.cache.evictions", users, BoundedCache::getEvictionCount)
+                .register(meterRegistry);
     }
 
-    @Autowired private RestTemplate restTemplate;
+    /**
+     * Запрашивает данные пользователя Facebook по access token.
+     * @param accessToken - access token пользователя Facebook
+     * @return данные пользователя; завершается с {@link BadRequestException}, если Facebook отклонил токен,
+     * и с {@link ServiceUnavailableException}, если Facebook недоступен или очередь запросов заполнена.
+     */
+    public CompletableFuture<FacebookUser> getUser(String accessToken) {
+        String key = hash(accessToken);
+        FacebookUser cached = users.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<FacebookUser> created = new CompletableFuture<>();
+        CompletableFuture<FacebookUser> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                FacebookUser user;
+                try {
+                    user = fetchUser(accessToken);
+                    remember(key, user);
+                } catch (RuntimeException e) {
+                    inFlight.remove(key, created);
+                    created.completeExceptionally(e);
+                    return;
+                }
+                inFlight.remove(key, created);
+                created.complete(user);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            rejected.incrementAndGet();
+            created.completeExceptionally(new ServiceUnavailableException("Error: server is busy, try again later."));
+        }
+        return created;
+    }
 
-    private final String FACEBOOK_GRAPH_API_BASE = "https://graph.facebook.com";
+    /**
+     * Останавливает пул потоков и закрывает соединения при закрытии контекста.
+     */
+    public void shutdown() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+    }
 
-    public FacebookUser getUser(String accessToken) {
-        var path = "/me?fields={fields}&redirect={redirect}&access_token={access_token}";
-        var fields = "email,first_name,last_name,id,picture.width(720).height(720)";
+    private FacebookUser fetchUser(String accessToken) {
         final Map<String, String> variables = new HashMap<>();
-        variables.put("fields", fields);
+        variables.put("fields", USER_FIELDS);
         variables.put("redirect", "false");
         variables.put("access_token", accessToken);
-        return restTemplate
-                .getForObject(FACEBOOK_GRAPH_API_BASE + path, FacebookUser.class, variables);
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            var user = restTemplate.getForObject(graphApiBase + USER_PATH, FacebookUser.class, variables);
+            if (user == null) {
+                throw new ServiceUnavailableException("Error: empty response from facebook.");
+            }
+            outcome = "success";
+            return user;
+        } catch (HttpClientErrorException e) {
+            outcome = "rejected";
+            throw new BadRequestException("Error: facebook access token was rejected.");
+        } catch (RestClientException e) {
+            throw new ServiceUnavailableException("Error: facebook is not available, try again later.");
+        } finally {
+            Timer.builder("facebook.graph.request")
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void remember(String key, FacebookUser user) {
+        if (cacheTtlMs <= 0) {
+            return;
+        }
+        users.put(key, user, System.currentTimeMillis() + cacheTtlMs);
     }
-}
+
+    /**
+     * Ключ кэша - SHA-256 токена в Base64, сам токен в памяти не хранится.
+     */
+    private static String hash(String accessToken) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(digest.digest(accessToken.getBytes(StandardCharsets.UTF_8)));
+    }}
@@ -0,0 +1,11 @@
+-- Полнотекстовый поиск activity, выражение совпадает с ActivityRepository.SEARCH_DOCUMENT
+CREATE INDEX IF NOT EXISTS idx_activity_search ON activity
+    USING gin (to_tsvector('russian', coalesce(activity_title, '') || ' ' || coalesce(activity_description, '')));
+
+-- Поиск activity по координатам, выражение совпадает с ActivityRepository.LOCATION_POINT
+CREATE INDEX IF NOT EXISTS idx_activity_location ON activity
+    USING gist (point(longitude, latitude));
+
+-- activity, которые читаются в ленты подписчиков при чтении, см. TimelineRepository.findTimelinePage
+CREATE INDEX IF NOT EXISTS idx_activity_timeline_pull ON activity
+    (activity_user_id, activity_creation_date DESC, activity_id DESC) WHERE activity_timeline_pull;
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.models.Enums.ETag;
+import com.angrydwarfs.framework.service.ActivityTagIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ActivityTagIndexTest {
+
+    private ActivityTagIndex createIndex() {
+        ActivityTagIndex index = new ActivityTagIndex(null);
+        index.put(1, EnumSet.of(ETag.JOGGING));
+        index.put(2, EnumSet.of(ETag.JOGGING, ETag.FITNESS));
+        index.put(3, EnumSet.of(ETag.FITNESS));
+        index.put(4, EnumSet.of(ETag.JOGGING, ETag.FITNESS, ETag.CROSSFIT));
+        return index;
+    }
+
+    @Test
+    @DisplayName("Проверяет выбор activity со всеми тэгами и с любым из тэгов по убыванию id")
+    void testFindAllAndAny() {
+        ActivityTagIndex index = createIndex();
+
+        assertEquals(Arrays.asList(4L, 2L), index.findAll(EnumSet.of(ETag.JOGGING, ETag.FITNESS), null, 10));
+        assertEquals(Arrays.asList(4L, 3L, 2L, 1L), index.findAny(EnumSet.of(ETag.JOGGING, ETag.FITNESS), null, 10));
+        assertEquals(Collections.singletonList(4L), index.findAny(EnumSet.of(ETag.CROSSFIT), null, 10));
+    }
+
+    @Test
+    @DisplayName("Проверяет постраничный выбор по курсору id")
+    void testPaging() {
+        ActivityTagIndex index = createIndex();
+
+        assertEquals(Arrays.asList(4L, 3L), index.findAny(EnumSet.of(ETag.JOGGING, ETag.FITNESS), null, 2));
+        assertEquals(Arrays.asList(2L, 1L), index.findAny(EnumSet.of(ETag.JOGGING, ETag.FITNESS), 3L, 2));
+        assertEquals(Collections.emptyList(), index.findAny(EnumSet.of(ETag.JOGGING), 1L, 2));
+    }
+
+    @Test
+    @DisplayName("Проверяет количество activity по тэгам при изменении и удалении activity")
+    void testCounts() {
+        ActivityTagIndex index = createIndex();
+        assertEquals(3, index.counts().get(ETag.JOGGING).intValue());
+        assertEquals(3, index.counts().get(ETag.FITNESS).intValue());
+        assertEquals(1, index.counts().get(ETag.CROSSFIT).intValue());
+
+        index.put(4, EnumSet.of(ETag.CROSSFIT));
+        index.remove(1);
+        assertEquals(1, index.counts().get(ETag.JOGGING).intValue());
+        assertEquals(2, index.counts().get(ETag.FITNESS).intValue());
+        assertEquals(1, index.counts().get(ETag.CROSSFIT).intValue());
+        assertEquals(Collections.singletonList(2L), index.findAll(EnumSet.of(ETag.JOGGING, ETag.FITNESS), null, 10));
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ для пустого списка тэгов")
+    void testEmptyTags() {
+        ActivityTagIndex index = createIndex();
+        assertThrows(IllegalArgumentException.class, () -> index.findAll(Collections.emptyList(), null, 10));
+    }
+}
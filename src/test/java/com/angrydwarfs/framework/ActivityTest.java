@@ -30,6 +30,8 @@ import com.angrydwarfs.framework.repository.TagRepository;
 import com.angrydwarfs.framework.repository.TokenRepository;
 import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
+import com.angrydwarfs.framework.service.ActivityTagIndex;
+import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -88,6 +90,9 @@ public class ActivityTest {
     @Autowired
     TokenUtils tokenUtils;
 
+    @Autowired
+    ActivityTagIndex activityTagIndex;
+
     @Value("${dwarfsframework.app.jwtSecret}")
     private String jwtSecret;
 
@@ -156,6 +161,235 @@ public class ActivityTest {
                 .andExpect(content().string("[{\"activityTitle\":\"Fourth activity\",\"activityDescription\":\"Third user body activity FOURTH\",\"latitude\":null,\"longitude\":null,\"activityAddress\":null,\"creationDate\":\"" + date + "\",\"dateOfActivity\":null,\"userActivities\":{\"username\":\"user\",\"creationDate\":\"" + date + "\",\"lastVisitedDate\":null,\"userStatus\":[]},\"tags\":[]}]"));
     }
 
+    @Test
+    @DisplayName("Проверяет постраничную ленту activity пользователя ADMIN.")
+    public void showAdminActivityFeed() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        LocalDate localDate = LocalDate.now();
+        String date = localDate + " 00:00:00";
+
+        this.mockMvc.perform(get("/api/auth/users/activities/feed?limit=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Second activity"))
+                .andExpect(jsonPath("$.items[0].creationDate").value(date))
+                .andExpect(jsonPath("$.items[0].tags").isEmpty())
+                .andExpect(jsonPath("$.nextCursor").value(localDate + "T00:00_2"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/feed?limit=1&cursor=" + localDate + "T00:00_2")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].activityTitle").value("First activity"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/feed?cursor=wrong")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("message").value("Error: invalid cursor!"));
+    }
+
+    @Test
+    @DisplayName("Проверяет полнотекстовый поиск activity по заголовку и описанию.")
+    public void searchActivities() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        this.mockMvc.perform(get("/api/auth/users/activities/search?query=third&limit=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Third activity"))
+                .andExpect(jsonPath("$.nextCursor").value("1"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/search?query=third&cursor=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(3));
+
+        // слова приводятся к основе - по activities находятся activity
+        this.mockMvc.perform(get("/api/auth/users/activities/search?query=activities&limit=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/search?query=third&tags=JOGGING")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+
+        this.mockMvc.perform(get("/api/auth/users/activities/search?query=")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("message").value("Error: search query is empty!"));
+    }
+
+    @Test
+    @DisplayName("Проверяет поиск activity в радиусе от точки и в прямоугольной области.")
+    public void showNearbyActivities() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        this.mockMvc.perform(post("/api/auth/users/activities/newActivity")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"activityTitle\": \"Near activity\", \"activityBody\": \"Near activity body\", " +
+                        "\"latitude\": 55.7558, \"longitude\": 37.6173 }"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(post("/api/auth/users/activities/newActivity")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"activityTitle\": \"Far activity\", \"activityBody\": \"Far activity body\", " +
+                        "\"latitude\": 59.9343, \"longitude\": 30.3351 }"))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/users/activities/nearby?lat=55.75&lon=37.62&radius=5000")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Near activity"))
+                .andExpect(jsonPath("$.items[0].distance", Matchers.lessThan(1000.0)));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/nearby?minLat=50&minLon=30&maxLat=60&maxLon=40&limit=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Far activity"))
+                .andExpect(jsonPath("$.nextCursor").value("1"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/nearby?lat=95&lon=37.62")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    @DisplayName("Проверяет выбор activity по тэгам и количество activity по тэгам.")
+    public void showTagActivities() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        activityTagIndex.rebuild();
+
+        this.mockMvc.perform(post("/api/auth/users/activities/newActivity")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"activityTitle\": \"Jogging activity\", \"activityBody\": \"Jogging activity body\", \"tags\": [\"JOGGING\"] }"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(post("/api/auth/users/activities/newActivity")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"activityTitle\": \"Mixed activity\", \"activityBody\": \"Mixed activity body\", \"tags\": [\"JOGGING\", \"FITNESS\"] }"))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/users/activities/tags?tags=JOGGING&tags=FITNESS")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Mixed activity"))
+                .andExpect(jsonPath("$.items[0].tags", Matchers.containsInAnyOrder("JOGGING", "FITNESS")));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/tags?tags=JOGGING&tags=FITNESS&match=any&limit=1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Mixed activity"))
+                .andExpect(jsonPath("$.nextCursor").value("11"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/tags/counts")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.JOGGING").value(2))
+                .andExpect(jsonPath("$.FITNESS").value(1))
+                .andExpect(jsonPath("$.CROSSFIT").value(0));
+    }
+
+    @Test
+    @DisplayName("Проверяет пакетную загрузку activity из NDJSON потока и JSON массива с ошибками элементов.")
+    public void importActivities() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        this.mockMvc.perform(post("/api/auth/users/activities/import")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType("application/x-ndjson")
+                .content("{ \"activityTitle\": \"Import first\", \"activityBody\": \"Import body\", \"tags\": [\"JOGGING\"] }\n" +
+                        "{ \"activityTitle\": \"Import tag\", \"activityBody\": \"Import body\", \"tags\": [\"SWIMMING\"] }\n" +
+                        "{ \"activityTitle\": \"Im\", \"activityBody\": \"Import body\" }\n" +
+                        "{ \"activityTitle\": \"Import user\", \"activityBody\": \"Import body\", \"userId\": 2 }\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[1].index").value(2));
+
+        assertEquals("Import first", activityRepository.findById(10L).get().getActivityTitle());
+        Assert.assertTrue(activityRepository.findById(10L).get().getTags().toString().contains("JOGGING"));
+        assertEquals("user", activityRepository.findById(11L).get().getUserActivities().getUsername());
+
+        this.mockMvc.perform(post("/api/auth/users/activities/import")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{ \"activityTitle\": \"Import array\", \"activityBody\": \"Import body\" }, " +
+                        "{ \"activityTitle\": \"Import missing\", \"activityBody\": \"Import body\", \"userId\": 100 }]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1));
+    }
+
+    @Test
+    @DisplayName("Проверяет попадание нового activity канала USER в домашнюю ленту подписчика ADMIN.")
+    public void showAdminTimeline() throws Exception{
+        JwtResponse adminJwt = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, adminJwt.getToken());
+        JwtResponse userJwt = tokenUtils.makeAuth("user", password);
+        tokenUtils.makeToken("user", userJwt.getToken());
+
+        this.mockMvc.perform(post("/api/auth/subscription/change-subscription/3")
+                .header("Authorization", "Bearer " + adminJwt.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(post("/api/auth/users/activities/newActivity")
+                .header("Authorization", "Bearer " + userJwt.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"activityTitle\": \"Timeline activity\", \"activityBody\": \"Timeline activity body\", \"tags\": [\"JOGGING\"] }"))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/users/activities/timeline")
+                .header("Authorization", "Bearer " + adminJwt.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(10))
+                .andExpect(jsonPath("$.items[0].activityTitle").value("Timeline activity"))
+                .andExpect(jsonPath("$.items[0].tags[0]").value("JOGGING"));
+
+        this.mockMvc.perform(get("/api/auth/users/activities/timeline")
+                .header("Authorization", "Bearer " + userJwt.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
     @Test
     @DisplayName("Проверяет создание нового activity пользователем ADMIN.")
     public void createAdminNewActivity() {
@@ -20,7 +20,11 @@ import com.angrydwarfs.framework.controllers.AuthController;
 import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.payload.response.JwtResponse;
 import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.jwt.JwtClaims;
+import com.angrydwarfs.framework.security.jwt.JwtUtils;
+import com.angrydwarfs.framework.security.jwt.TokenRevocationCache;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
+import com.angrydwarfs.framework.security.services.UserDetailsImpl;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -60,6 +64,12 @@ public class AuthTest {
     @Autowired
     TokenUtils tokenUtils;
 
+    @Autowired
+    TokenRevocationCache tokenRevocationCache;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -244,6 +254,57 @@ public class AuthTest {
                 .andExpect(jsonPath("message").value("You are logout."));
     }
 
+    @Test
+    @DisplayName("Проверяет однократный разбор токена и повторное использование проверенных данных.")
+    public void parseTokenOnceTest() {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+
+        JwtClaims claims = jwtUtils.parseJwtToken(jwtResponse.getToken());
+        Assert.assertNotNull(claims);
+        Assert.assertEquals(username, claims.getSubject());
+        Assert.assertNotNull(claims.getId());
+        Assert.assertSame(claims, jwtUtils.parseJwtToken(jwtResponse.getToken()));
+        Assert.assertNull(jwtUtils.parseJwtToken(jwtResponse.getToken() + "x"));
+    }
+
+    @Test
+    @DisplayName("Проверяет построение пользователя только по данным токена.")
+    public void claimsPrincipalTest() {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+
+        JwtClaims claims = jwtUtils.parseJwtToken(jwtResponse.getToken());
+        Assert.assertTrue(claims.hasPrincipal());
+        UserDetailsImpl userDetails = UserDetailsImpl.build(claims);
+        Assert.assertEquals(jwtResponse.getId(), userDetails.getId());
+        Assert.assertEquals("admin@admin.com", userDetails.getEmail());
+        Assert.assertTrue(userDetails.getAuthorities().toString().contains("ROLE_ADMINISTRATOR"));
+        Assert.assertTrue(userDetails.getAuthorities().toString().contains("ROLE_MODERATOR"));
+        Assert.assertTrue(userDetails.getAuthorities().toString().contains("ROLE_USER"));
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ в доступе по токену после выхода.")
+    public void logoutRevokedTokenTest() throws Exception {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        long hitsBefore = tokenRevocationCache.getHitCount();
+
+        this.mockMvc.perform(get("/api/auth/users/getUserInfo")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/logout")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("message").value("You are logout."));
+
+        this.mockMvc.perform(get("/api/auth/users/getUserInfo")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().isUnauthorized());
+
+        Assert.assertEquals(hitsBefore + 3, tokenRevocationCache.getHitCount());
+    }
+
 //    /**
 //     * Проверка метода reset, для корректной проверки требует seсretKey
 //     * @throws Exception
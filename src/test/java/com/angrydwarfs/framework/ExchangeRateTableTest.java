@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.config.ExchangeRateTable;
+import com.angrydwarfs.framework.config.FastMoney;
+import com.angrydwarfs.framework.config.Money;
+import com.angrydwarfs.framework.exceptions.IllegalMoneyFormatException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExchangeRateTableTest {
+    private static final Currency RUB = Currency.getInstance("RUB");
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+    private static final Currency KWD = Currency.getInstance("KWD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency IDR = Currency.getInstance("IDR");
+    private static final Currency VND = Currency.getInstance("VND");
+
+    private static ExchangeRateTable table() {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        rates.put(USD, new BigDecimal("75.00"));
+        rates.put(JPY, new BigDecimal("0.70"));
+        rates.put(KWD, new BigDecimal("245.50"));
+        return new ExchangeRateTable(RUB, rates, 0);
+    }
+
+    @Test
+    @DisplayName("Проверяет перевод между валютами с разной точностью и округление")
+    void testConvert() {
+        ExchangeRateTable table = table();
+        assertEquals(FastMoney.ofMinor(7500, RUB), table.convert(FastMoney.ofMinor(100, USD), RUB));
+        assertEquals(FastMoney.ofMinor(100, USD), table.convert(FastMoney.ofMinor(7500, RUB), USD));
+        // 1 USD = 75 / 0.7 = 107.142857... JPY
+        assertEquals(FastMoney.ofMinor(107, JPY), table.convert(FastMoney.ofMinor(100, USD), JPY));
+        assertEquals(FastMoney.ofMinor(108, JPY), table.convert(FastMoney.ofMinor(100, USD), JPY, RoundingMode.CEILING));
+        assertEquals(FastMoney.ofMinor(-108, JPY), table.convert(FastMoney.ofMinor(-100, USD), JPY, RoundingMode.FLOOR));
+        // 1 KWD = 245.5 / 75 = 3.273333... USD
+        assertEquals(FastMoney.ofMinor(327, USD), table.convert(FastMoney.ofMinor(1000, KWD), USD));
+        assertEquals(new BigDecimal("0.327333333333"), table.getMinorUnitRate(KWD, USD));
+
+        FastMoney rub = FastMoney.ofMinor(12345, RUB);
+        assertSame(rub, table.convert(rub, RUB));
+    }
+
+    @Test
+    @DisplayName("Проверяет совпадение быстрого перевода с расчетом через BigDecimal, в том числе для больших сумм")
+    void testConvertMatchesBigDecimal() {
+        ExchangeRateTable table = table();
+        Currency[] currencies = {RUB, USD, JPY, KWD};
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            Currency from = currencies[random.nextInt(currencies.length)];
+            Currency to = currencies[random.nextInt(currencies.length)];
+            long minorUnits = i % 10 == 0 ? random.nextLong() / 1_000_000 : random.nextInt(100_000_000) - 50_000_000;
+            BigDecimal expected = BigDecimal.valueOf(minorUnits)
+                    .multiply(table.getMinorUnitRate(from, to))
+                    .setScale(0, RoundingMode.HALF_EVEN);
+            assertEquals(expected.longValueExact(),
+                    table.convert(FastMoney.ofMinor(minorUnits, from), to).getMinorUnits());
+        }
+        assertThrows(ArithmeticException.class,
+                () -> table.convert(FastMoney.ofMinor(Long.MAX_VALUE, USD), JPY));
+    }
+
+    @Test
+    @DisplayName("Проверяет точность перевода между далекими по стоимости валютами и очень малый курс")
+    void testSmallCrossRate() {
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        rates.put(KWD, new BigDecimal("245.50"));
+        rates.put(IDR, new BigDecimal("0.0052"));
+        rates.put(VND, new BigDecimal("0.0000000001"));
+        ExchangeRateTable table = new ExchangeRateTable(RUB, rates, 0);
+
+        BigDecimal idrToKwd = new BigDecimal("0.0052")
+                .movePointRight(scale(KWD) - scale(IDR))
+                .divide(new BigDecimal("245.50"), new MathContext(40));
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            long minorUnits = Math.abs(random.nextLong() % 10_000_000_000_000L);
+            BigDecimal exact = BigDecimal.valueOf(minorUnits).multiply(idrToKwd);
+            long converted = table.convert(FastMoney.ofMinor(minorUnits, IDR), KWD).getMinorUnits();
+            // отклонение от точного значения - только округление до минимальной единицы
+            assertTrue(exact.subtract(BigDecimal.valueOf(converted)).abs().compareTo(new BigDecimal("0.501")) < 0,
+                    minorUnits + " IDR: " + converted + " KWD, exact " + exact);
+        }
+
+        // курс VND -> KWD около 4e-10 за минимальную единицу
+        assertTrue(table.getMinorUnitRate(VND, KWD).signum() > 0);
+        assertEquals(407, table.convert(FastMoney.ofMinor(1_000_000_000_000L, VND), KWD).getMinorUnits());
+        assertEquals(2_455_000_000L, table.convert(FastMoney.ofMinor(1, KWD), VND).getMinorUnits());
+    }
+
+    private static int scale(Currency currency) {
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ при неизвестной валюте и неположительном курсе")
+    void testInvalid() {
+        ExchangeRateTable table = table();
+        assertThrows(IllegalArgumentException.class, () -> table.convert(FastMoney.ofMinor(100, USD), EUR));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExchangeRateTable(RUB, Collections.singletonMap(EUR, BigDecimal.ZERO), 0));
+        assertEquals(Collections.singleton(USD), ExchangeRateTable.empty(USD).getCurrencies());
+    }
+
+    @Test
+    @DisplayName("Проверяет перевод Money в другую валюту")
+    void testMoneyConvert() throws IllegalMoneyFormatException {
+        Money money = new Money("150.00").convertTo(USD, table());
+        assertEquals(new BigDecimal("2.00"), money.getValue());
+        assertEquals(USD, money.getCurrency());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.exceptions.BadRequestException;
+import com.angrydwarfs.framework.exceptions.ServiceUnavailableException;
+import com.angrydwarfs.framework.models.FacebookUser;
+import com.angrydwarfs.framework.service.client.FacebookClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FacebookClientTest {
+    private FacebookStubServer stub;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new FacebookStubServer();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    private FacebookClient createClient(int readTimeoutMs, long cacheTtlMs) {
+        return new FacebookClient(stub.getUrl(), 500, readTimeoutMs, 4, 8, cacheTtlMs, 100, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Проверяет получение пользователя и повторное использование ответа из кэша")
+    void testGetUserCached() throws Exception {
+        FacebookClient client = createClient(300, 60000);
+
+        FacebookUser user = client.getUser("token").get();
+        assertEquals("Stub", user.getFirstName());
+        assertEquals(String.valueOf(Math.abs("token".hashCode())) + "@facebook.stub", user.getEmail());
+
+        assertEquals(user, client.getUser("token").get());
+        assertEquals(1, stub.getRequestCount());
+        assertEquals(1.0, meterRegistry.get("facebook.graph.cache").tag("result", "hit").functionCounter().count());
+
+        client.getUser("other").get();
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(2, meterRegistry.get("facebook.graph.request").tag("outcome", "success").timer().count());
+        client.shutdown();
+    }
+
+    @Test
+    @DisplayName("Проверяет, что заполненный кэш вытесняет старые записи и принимает новые")
+    void testFullCacheAcceptsNewUsers() throws Exception {
+        FacebookClient client = new FacebookClient(stub.getUrl(), 500, 300, 4, 8, 60000, 2, meterRegistry);
+
+        client.getUser("first").get();
+        client.getUser("second").get();
+        client.getUser("third").get();
+        assertEquals(3, stub.getRequestCount());
+
+        client.getUser("third").get();
+        assertEquals(3, stub.getRequestCount());
+        assertTrue(meterRegistry.get("facebook.graph.cache.evictions").functionCounter().count() > 0);
+        client.shutdown();
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ при отклоненном токене и таймаут чтения ответа")
+    void testErrors() throws Exception {
+        FacebookClient client = createClient(300, 0);
+
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> client.getUser("invalid").get());
+        assertTrue(rejected.getCause() instanceof BadRequestException);
+
+        ExecutionException timeout = assertThrows(ExecutionException.class, () -> client.getUser("slow").get());
+        assertTrue(timeout.getCause() instanceof ServiceUnavailableException);
+        assertEquals(1, meterRegistry.get("facebook.graph.request").tag("outcome", "error").timer().count());
+
+        int requests = stub.getRequestCount();
+        client.getUser("token").get();
+        client.getUser("token").get();
+        assertEquals(requests + 2, stub.getRequestCount());
+        client.shutdown();
+    }
+
+    @Test
+    @DisplayName("Проверяет объединение одновременных запросов с одним токеном")
+    void testConcurrentRequestsCoalesced() throws Exception {
+        FacebookClient client = createClient(5000, 60000);
+
+        CompletableFuture<FacebookUser> first = client.getUser("slow");
+        CompletableFuture<FacebookUser> second = client.getUser("slow");
+        assertEquals(first.get(), second.get());
+        assertEquals(1, stub.getRequestCount());
+        client.shutdown();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заглушка Facebook Graph API для тестов - http сервер на свободном порту localhost.
+ * Запрос /me возвращает пользователя для любого токена, для токена "id:устройство" - пользователя с этим id,
+ * кроме токена "invalid" - ответ 400,
+ * и "slow" - ответ задерживается на {@link #SLOW_DELAY_MS} мс.
+ */
+public class FacebookStubServer implements AutoCloseable {
+    static final long SLOW_DELAY_MS = 1000;
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    public FacebookStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/me", this::handleMe);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleMe(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String token = query.substring(query.indexOf("access_token=") + "access_token=".length());
+        if (token.equals("invalid")) {
+            respond(exchange, 400, "{\"error\":{\"message\":\"Invalid OAuth access token.\",\"type\":\"OAuthException\",\"code\":190}}");
+            return;
+        }
+        if (token.equals("slow")) {
+            try {
+                Thread.sleep(SLOW_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // токены вида "id:устройство" - один пользователь с разных устройств
+        String id = token.contains(":") ? token.substring(0, token.indexOf(':')) : String.valueOf(Math.abs(token.hashCode()));
+        respond(exchange, 200, "{\"id\":\"" + id + "\",\"first_name\":\"Stub\"," +
+                "\"last_name\":\"User\",\"email\":\"" + id + "@facebook.stub\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.config.FastMoney;
+import com.angrydwarfs.framework.config.Money;
+import com.angrydwarfs.framework.exceptions.IllegalMoneyFormatException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FastMoneyTest {
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    @DisplayName("Проверяет разбор строки - точность валюты, отбрасывание лишних знаков, совпадение с Money")
+    void testParse() {
+        assertEquals(3550, FastMoney.of("35.50").getMinorUnits());
+        assertEquals(3500, FastMoney.of("35").getMinorUnits());
+        assertEquals(3505, FastMoney.of("35.059").getMinorUnits());
+        assertEquals(12, FastMoney.of("12.9", JPY).getMinorUnits());
+        assertEquals(Currency.getInstance("RUB"), FastMoney.of("1").getCurrency());
+        assertEquals(new Money("56.709", USD).getValue(), FastMoney.of("56.709", USD).getValue());
+        assertEquals("35.50 USD", FastMoney.of("35.5", USD).toString());
+    }
+
+    @Test
+    @DisplayName("Проверяет данные - введены только числа, разделитель точка, значение больше нуля")
+    void shouldThrowIllegalMoneyFormatException() {
+        for (String value : new String[] {"k5.50", "35,50", "", ".5", "5.", "1.2.3", "-", "--5"}) {
+            IllegalMoneyFormatException thrown = assertThrows(IllegalMoneyFormatException.class, () -> FastMoney.of(value));
+            assertTrue(thrown.getMessage().contains("не числовые"), value);
+        }
+        IllegalMoneyFormatException negative = assertThrows(IllegalMoneyFormatException.class, () -> FastMoney.of("-35.50"));
+        assertTrue(negative.getMessage().contains("отрицательные"));
+        assertThrows(IllegalMoneyFormatException.class, () -> FastMoney.of("92233720368547758.08"));
+    }
+
+    @Test
+    @DisplayName("Проверяет сложение, вычитание и умножение в минимальных единицах валюты")
+    void testArithmetic() {
+        FastMoney first = FastMoney.of("80.22", USD);
+        FastMoney second = FastMoney.of("69.99", USD);
+
+        assertEquals(FastMoney.of("150.21", USD), first.plus(second));
+        assertEquals(FastMoney.of("10.23", USD), first.minus(second));
+        assertEquals(FastMoney.ofMinor(-1023, USD), second.minus(first));
+        assertEquals(FastMoney.of("396.90", USD), FastMoney.of("56.70", USD).multipliedBy(7));
+        assertEquals(FastMoney.of("80.23", USD), first.plusMinor(1));
+        assertThrows(IllegalArgumentException.class, () -> first.plus(FastMoney.of("1")));
+        assertThrows(ArithmeticException.class, () -> FastMoney.ofMinor(Long.MAX_VALUE).plusMinor(1));
+    }
+
+    @Test
+    @DisplayName("Проверяет деление с банковским округлением и округлением вниз")
+    void testDivide() {
+        assertEquals(1250, FastMoney.ofMinor(2500).dividedBy(2, RoundingMode.HALF_EVEN).getMinorUnits());
+        assertEquals(2, FastMoney.ofMinor(5).dividedBy(2, RoundingMode.HALF_EVEN).getMinorUnits());
+        assertEquals(4, FastMoney.ofMinor(7).dividedBy(2, RoundingMode.HALF_EVEN).getMinorUnits());
+        assertEquals(3, FastMoney.ofMinor(7).dividedBy(2, RoundingMode.DOWN).getMinorUnits());
+        assertEquals(701, FastMoney.of("35.05").dividedBy(5, RoundingMode.DOWN).getMinorUnits());
+        assertThrows(ArithmeticException.class, () -> FastMoney.ofMinor(7).dividedBy(2, RoundingMode.UNNECESSARY));
+        assertThrows(ArithmeticException.class, () -> FastMoney.ofMinor(7).dividedBy(0, RoundingMode.DOWN));
+    }
+
+    @Test
+    @DisplayName("Проверяет деление на границах long - переполнение и делитель Long.MIN_VALUE")
+    void testDivideLongBounds() {
+        assertThrows(ArithmeticException.class,
+                () -> FastMoney.ofMinor(Long.MIN_VALUE).dividedBy(-1, RoundingMode.HALF_EVEN));
+        assertEquals(-Long.MAX_VALUE, FastMoney.ofMinor(Long.MAX_VALUE).dividedBy(-1, RoundingMode.HALF_EVEN).getMinorUnits());
+
+        long half = 1L << 62;
+        for (long minor : new long[] {half - 1, half, half + 1, -half, -half - 1, Long.MAX_VALUE, Long.MIN_VALUE + 1}) {
+            for (RoundingMode mode : RoundingMode.values()) {
+                if (mode == RoundingMode.UNNECESSARY) {
+                    continue;
+                }
+                BigDecimal expected = BigDecimal.valueOf(minor).divide(BigDecimal.valueOf(Long.MIN_VALUE), 0, mode);
+                assertEquals(expected.longValueExact(),
+                        FastMoney.ofMinor(minor).dividedBy(Long.MIN_VALUE, mode).getMinorUnits(),
+                        minor + " / Long.MIN_VALUE " + mode);
+            }
+        }
+        assertEquals(1, FastMoney.ofMinor(Long.MIN_VALUE).dividedBy(Long.MIN_VALUE, RoundingMode.UNNECESSARY).getMinorUnits());
+    }
+
+    @Test
+    @DisplayName("Проверяет совпадение округления при делении и умножении на дробь с BigDecimal для всех режимов")
+    void testRoundingMatchesBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long minor = random.nextInt(2_000_001) - 1_000_000;
+            long divisor = random.nextInt(199) - 99;
+            long numerator = random.nextInt(20_001) - 10_000;
+            if (divisor == 0) {
+                continue;
+            }
+            for (RoundingMode mode : RoundingMode.values()) {
+                if (mode == RoundingMode.UNNECESSARY) {
+                    continue;
+                }
+                BigDecimal expected = BigDecimal.valueOf(minor).divide(BigDecimal.valueOf(divisor), 0, mode);
+                assertEquals(expected.longValueExact(),
+                        FastMoney.ofMinor(minor).dividedBy(divisor, mode).getMinorUnits(),
+                        minor + " / " + divisor + " " + mode);
+
+                BigDecimal product = BigDecimal.valueOf(minor * numerator).divide(BigDecimal.valueOf(divisor), 0, mode);
+                assertEquals(product.longValueExact(),
+                        FastMoney.ofMinor(minor).multipliedBy(numerator, divisor, mode).getMinorUnits(),
+                        minor + " * " + numerator + " / " + divisor + " " + mode);
+            }
+        }
+    }
+}
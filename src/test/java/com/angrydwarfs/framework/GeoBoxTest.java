@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.service.GeoBox;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GeoBoxTest {
+
+    @Test
+    @DisplayName("Проверяет расстояние между точками по формуле гаверсинусов")
+    void testDistance() {
+        double distance = GeoBox.distanceMeters(55.7558, 37.6173, 59.9343, 30.3351);
+        assertEquals(634_000, distance, 5_000);
+        assertEquals(0, GeoBox.distanceMeters(10, 20, 10, 20), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Проверяет, что прямоугольник содержит все точки круга")
+    void testBoxCoversRadius() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = random.nextDouble() * 170 - 85;
+            double longitude = random.nextDouble() * 360 - 180;
+            double radius = 1 + random.nextDouble() * 100_000;
+            GeoBox box = GeoBox.around(latitude, longitude, radius);
+
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double angular = radius * 0.999 / GeoBox.EARTH_RADIUS_METERS;
+            double lat1 = Math.toRadians(latitude);
+            double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                    + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+            double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                    Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+            double pointLongitude = ((Math.toDegrees(lon2) + 540) % 360) - 180;
+
+            assertTrue(box.contains(Math.toDegrees(lat2), pointLongitude),
+                    "point at " + radius + " m from " + latitude + ", " + longitude);
+        }
+    }
+
+    @Test
+    @DisplayName("Проверяет расширение области на все долготы у полюса и 180-го меридиана")
+    void testWrapAround() {
+        GeoBox polar = GeoBox.around(89.99, 0, 10_000);
+        assertEquals(-180, polar.getMinLongitude());
+        assertEquals(180, polar.getMaxLongitude());
+        assertEquals(90, polar.getMaxLatitude());
+
+        GeoBox meridian = GeoBox.around(0, 179.99, 10_000);
+        assertEquals(-180, meridian.getMinLongitude());
+        assertEquals(180, meridian.getMaxLongitude());
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ для координат вне допустимых значений")
+    void testInvalidCoordinates() {
+        assertThrows(IllegalArgumentException.class, () -> GeoBox.around(95, 0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> GeoBox.around(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GeoBox.of(10, 10, 0, 20));
+    }
+}
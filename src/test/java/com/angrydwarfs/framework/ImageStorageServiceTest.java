@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.service.ImageStorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageStorageServiceTest {
+    @TempDir
+    Path uploadDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ImageStorageService storage;
+    private byte[] png;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        storage = new ImageStorageService(uploadDir.toString(), 5242880, meterRegistry);
+        storage.init();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", output);
+        png = output.toByteArray();
+    }
+
+    @Test
+    @DisplayName("Проверяет, что повторная загрузка тех же байт возвращает уже сохраненный файл")
+    void testStoreDeduplicates() {
+        String first = storage.store(new MockMultipartFile("file", "a.png", "image/png", png));
+        String second = storage.store(new MockMultipartFile("file", "b.png", "image/png", png));
+
+        assertEquals(first, second);
+        assertEquals(1, count("stored"));
+        assertEquals(1, count("deduplicated"));
+    }
+
+    @Test
+    @DisplayName("Проверяет загрузку файла, сохраненного параллельной загрузкой во время записи временного файла")
+    void testConcurrentStoreDeduplicates() throws IOException {
+        // пока файл пишется во временный каталог, тот же файл сохраняет другая загрузка
+        MockMultipartFile racing = new MockMultipartFile("file", "a.png", "image/png", png) {
+            @Override
+            public void transferTo(File dest) throws IOException {
+                storage.store(new MockMultipartFile("file", "b.png", "image/png", png));
+                super.transferTo(dest);
+            }
+        };
+        String fileName = storage.store(racing);
+
+        assertTrue(storage.find(fileName).isPresent());
+        assertEquals(1, count("stored"));
+        assertEquals(1, count("deduplicated"));
+        try (Stream<Path> spooled = Files.list(uploadDir.resolve(".tmp"))) {
+            assertEquals(0, spooled.count());
+        }
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("image.store").tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.payload.response.JwtResponse;
+import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.jwt.TokenUtils;
+import com.angrydwarfs.framework.service.ImageCleanupService;
+import com.angrydwarfs.framework.service.ImageVariantService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = { "spring.config.location=classpath:application-test.yml" })
+@Sql(value = {"/create-user-before.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/create-user-after.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class ImageTest {
+    private static final byte[] PNG = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'
+    };
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    TokenUtils tokenUtils;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ImageCleanupService imageCleanupService;
+
+    @Autowired
+    ImageVariantService imageVariantService;
+
+    String username = "admin";
+    String password = "12345";
+
+    @Test
+    @DisplayName("Проверяет загрузку аватара и выдачу изображения целиком, по диапазону и с проверкой ETag.")
+    public void uploadAndServeAvatar() throws Exception {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        String bearer = "Bearer " + jwtResponse.getToken();
+
+        MvcResult upload = this.mockMvc.perform(multipart("/api/auth/img/avatar")
+                .file(new MockMultipartFile("file", "avatar.txt", "text/plain", PNG))
+                .header("Authorization", bearer))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andReturn();
+        String fileName = objectMapper.readTree(upload.getResponse().getContentAsString()).get("fileName").asText();
+        assertEquals(fileName, userRepository.findByUsername(username).get().getAvatarFileName());
+
+        MvcResult full = this.mockMvc.perform(get("/api/auth/img/" + fileName)
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("Content-Length", String.valueOf(PNG.length)))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        assertArrayEquals(PNG, full.getResponse().getContentAsByteArray());
+        String etag = full.getResponse().getHeader("ETag");
+
+        this.mockMvc.perform(get("/api/auth/img/" + fileName)
+                .header("Authorization", bearer)
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        MvcResult partial = this.mockMvc.perform(get("/api/auth/img/" + fileName)
+                .header("Authorization", bearer)
+                .header("Range", "bytes=1-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1-3/" + PNG.length))
+                .andReturn();
+        assertArrayEquals(new byte[] {'P', 'N', 'G'}, partial.getResponse().getContentAsByteArray());
+
+        this.mockMvc.perform(get("/api/auth/img/" + fileName)
+                .header("Authorization", bearer)
+                .header("Range", "bytes=100-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + PNG.length));
+
+        this.mockMvc.perform(get("/api/auth/img/" + fileName.substring(0, 36) + ".png")
+                .header("Authorization", bearer))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Проверяет хранение одинаковых изображений в одном файле и удаление файлов без ссылок.")
+    public void deduplicateAndPurgeImages() throws Exception {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        String bearer = "Bearer " + jwtResponse.getToken();
+
+        String first = uploadAvatar(bearer, PNG);
+        assertEquals(first, uploadAvatar(bearer, PNG));
+        assertEquals(64 + ".png".length(), first.length());
+
+        this.mockMvc.perform(get("/api/auth/img/" + first)
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + first.substring(0, 64) + "\""));
+
+        byte[] other = PNG.clone();
+        other[PNG.length - 1] = 'X';
+        String second = uploadAvatar(bearer, other);
+        assertNotEquals(first, second);
+
+        this.mockMvc.perform(delete("/api/auth/img/unused")
+                .header("Authorization", bearer))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/img/" + first)
+                .header("Authorization", bearer))
+                .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/api/auth/img/" + second)
+                .header("Authorization", bearer))
+                .andExpect(status().isOk());
+        assertEquals(0, imageCleanupService.purgeUnreferencedImages().getPurged());
+    }
+
+    @Test
+    @DisplayName("Проверяет создание уменьшенных копий изображения и выбор копии по параметру size.")
+    public void serveImageVariants() throws Exception {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        String bearer = "Bearer " + jwtResponse.getToken();
+
+        BufferedImage picture = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = picture.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, 300, 200);
+        graphics.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", png);
+
+        String fileName = uploadAvatar(bearer, png.toByteArray());
+        imageVariantService.generate(fileName);
+        String hash = fileName.substring(0, 64);
+
+        MvcResult small = this.mockMvc.perform(get("/api/auth/img/" + fileName + "?size=50")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("ETag", "\"" + hash + "-64\""))
+                .andReturn();
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(small.getResponse().getContentAsByteArray()));
+        assertEquals(64, thumbnail.getWidth());
+        assertEquals(43, thumbnail.getHeight());
+
+        MvcResult medium = this.mockMvc.perform(get("/api/auth/img/" + fileName + "?size=256")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + hash + "-256\""))
+                .andReturn();
+        assertEquals(256, ImageIO.read(new ByteArrayInputStream(medium.getResponse().getContentAsByteArray())).getWidth());
+
+        // копии 720 больше исходного изображения не будет - исходный файл кэшируется долго
+        this.mockMvc.perform(get("/api/auth/img/" + fileName + "?size=720")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("ETag", "\"" + hash + "\""))
+                .andExpect(header().string("Cache-Control", "private, max-age=31536000, immutable"));
+
+        this.mockMvc.perform(get("/api/auth/img/" + fileName + "?size=2000")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + hash + "\""))
+                .andExpect(header().string("Cache-Control", "private, max-age=31536000, immutable"));
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ в загрузке файла неизвестного типа и файла больше допустимого размера.")
+    public void rejectInvalidUpload() throws Exception {
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        String bearer = "Bearer " + jwtResponse.getToken();
+
+        this.mockMvc.perform(multipart("/api/auth/img/avatar")
+                .file(new MockMultipartFile("file", "avatar.png", "image/png", "not an image".getBytes()))
+                .header("Authorization", bearer))
+                .andExpect(status().isUnsupportedMediaType());
+
+        byte[] large = new byte[2048];
+        System.arraycopy(PNG, 0, large, 0, PNG.length);
+        this.mockMvc.perform(multipart("/api/auth/img/avatar")
+                .file(new MockMultipartFile("file", "avatar.png", "image/png", large))
+                .header("Authorization", bearer))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    private String uploadAvatar(String bearer, byte[] content) throws Exception {
+        MvcResult upload = this.mockMvc.perform(multipart("/api/auth/img/avatar")
+                .file(new MockMultipartFile("file", "avatar.png", "image/png", content))
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(upload.getResponse().getContentAsString()).get("fileName").asText();
+    }
+}
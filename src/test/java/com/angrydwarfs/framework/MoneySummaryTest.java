@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.config.FastMoney;
+import com.angrydwarfs.framework.config.MoneySummary;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneySummaryTest {
+    private static final Currency RUB = Currency.getInstance("RUB");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Test
+    @DisplayName("Проверяет сумму, среднее, минимум и максимум в одном потоке, в параллельном режиме и через коллектор")
+    void testSummary() {
+        Random random = new Random(7);
+        long[] charges = new long[300_000];
+        BigInteger expected = BigInteger.ZERO;
+        for (int i = 0; i < charges.length; i++) {
+            charges[i] = random.nextInt(1_000_000) - 1000;
+            expected = expected.add(BigInteger.valueOf(charges[i]));
+        }
+        long min = Arrays.stream(charges).min().getAsLong();
+        long max = Arrays.stream(charges).max().getAsLong();
+
+        MoneySummary sequential = MoneySummary.of(charges, RUB);
+        MoneySummary parallel = MoneySummary.ofParallel(charges, RUB);
+        MoneySummary collected = Arrays.stream(charges).parallel()
+                .mapToObj(FastMoney::ofMinor)
+                .collect(MoneySummary.collector(RUB));
+
+        for (MoneySummary summary : new MoneySummary[] {sequential, parallel, collected}) {
+            assertEquals(charges.length, summary.getCount());
+            assertEquals(expected.longValueExact(), summary.getSum().getMinorUnits());
+            assertEquals(min, summary.getMin().getMinorUnits());
+            assertEquals(max, summary.getMax().getMinorUnits());
+            assertEquals(expected.divide(BigInteger.valueOf(charges.length)).longValueExact(),
+                    summary.getAverage(RoundingMode.DOWN).getMinorUnits());
+        }
+    }
+
+    @Test
+    @DisplayName("Проверяет точную сумму при промежуточном выходе за пределы long и ошибку при переполнении итога")
+    void testOverflow() {
+        MoneySummary summary = MoneySummary.of(new long[] {Long.MAX_VALUE, Long.MAX_VALUE, -Long.MAX_VALUE}, USD);
+        assertEquals(Long.MAX_VALUE, summary.getSum().getMinorUnits());
+
+        MoneySummary overflow = MoneySummary.of(new long[] {Long.MAX_VALUE, 1}, USD);
+        assertThrows(ArithmeticException.class, overflow::getSum);
+
+        MoneySummary negative = MoneySummary.of(new long[] {Long.MIN_VALUE, -1}, USD);
+        assertThrows(ArithmeticException.class, negative::getSum);
+        assertEquals(Long.MIN_VALUE, MoneySummary.of(new long[] {Long.MIN_VALUE}, USD).getSum().getMinorUnits());
+    }
+
+    @Test
+    @DisplayName("Проверяет пустой накопитель и отказ при сложении сумм в разных валютах")
+    void testEmptyAndCurrency() {
+        MoneySummary empty = new MoneySummary(RUB);
+        assertEquals(0, empty.getSum().getMinorUnits());
+        assertEquals(0, empty.getAverage(RoundingMode.HALF_EVEN).getMinorUnits());
+        assertNull(empty.getMin());
+        assertThrows(IllegalArgumentException.class, () -> empty.accept(FastMoney.ofMinor(1, USD)));
+        assertThrows(IllegalArgumentException.class, () -> empty.combine(new MoneySummary(USD)));
+    }
+
+    @Test
+    @DisplayName("Проверяет распределение суммы на равные части и по весам без потери минимальных единиц")
+    void testAllocate() {
+        assertEquals(Arrays.asList(FastMoney.ofMinor(34), FastMoney.ofMinor(33), FastMoney.ofMinor(33)),
+                Arrays.asList(FastMoney.ofMinor(100).allocate(3)));
+        assertEquals(Arrays.asList(FastMoney.ofMinor(-34), FastMoney.ofMinor(-33), FastMoney.ofMinor(-33)),
+                Arrays.asList(FastMoney.ofMinor(-100).allocate(3)));
+        assertEquals(Arrays.asList(FastMoney.ofMinor(4), FastMoney.ofMinor(1)),
+                Arrays.asList(FastMoney.ofMinor(5).allocate(70, 30)));
+        assertEquals(Arrays.asList(FastMoney.ofMinor(0), FastMoney.ofMinor(51), FastMoney.ofMinor(50)),
+                Arrays.asList(FastMoney.ofMinor(101).allocate(0, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> FastMoney.ofMinor(1).allocate(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> FastMoney.ofMinor(1).allocate(0));
+
+        Random random = new Random(11);
+        for (int i = 0; i < 1000; i++) {
+            FastMoney total = FastMoney.ofMinor(random.nextInt(2_000_000) - 1_000_000);
+            long[] ratios = {random.nextInt(10), random.nextInt(10), random.nextInt(10) + 1};
+            assertEquals(total, sum(total.allocate(ratios)));
+            assertEquals(total, sum(total.allocate(random.nextInt(50) + 1)));
+        }
+    }
+
+    private static FastMoney sum(FastMoney[] parts) {
+        return Arrays.stream(parts).collect(MoneySummary.collector(RUB)).getSum();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.exceptions.ServiceUnavailableException;
+import com.angrydwarfs.framework.security.services.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PasswordEncoderTest {
+
+    @Test
+    @DisplayName("Проверяет хэширование и проверку пароля в пуле потоков")
+    void testEncodeAndMatches() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(4), 1, 1, false, new SimpleMeterRegistry());
+
+        String hash = encoder.encode("12345");
+        assertTrue(encoder.matches("12345", hash));
+        assertFalse(encoder.matches("54321", hash));
+        encoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Проверяет отказ 503 при заполненной очереди хэширования")
+    void shouldRejectWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 1, false, meterRegistry);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        callers.submit(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("queued"));
+        while (meterRegistry.get("auth.password.queue").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> encoder.encode("rejected"));
+        assertEquals(1.0, meterRegistry.get("auth.password.rejected").functionCounter().count());
+
+        release.countDown();
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+        encoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Проверяет перехэширование при входе только при включенной настройке и старом параметре BCrypt")
+    void testUpgradeEncoding() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("12345");
+
+        BoundedPasswordEncoder disabled = new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(5), 1, 1, false, new SimpleMeterRegistry());
+        BoundedPasswordEncoder enabled = new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(5), 1, 1, true, new SimpleMeterRegistry());
+
+        assertFalse(disabled.upgradeEncoding(weakHash));
+        assertTrue(enabled.upgradeEncoding(weakHash));
+        disabled.shutdown();
+        enabled.shutdown();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.payload.response.JwtResponse;
+import com.angrydwarfs.framework.repository.UserRepository;
+import com.angrydwarfs.framework.security.jwt.TokenUtils;
+import com.angrydwarfs.framework.service.PresenceService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет количество sql запросов на основных сценариях чтения пользователя.
+ * Для запросов на проекциях проверяется точное число запросов, фильтр авторизации запросов не выполняет
+ * (токен в кэше, пользователь берется из claims, дата входа пишется отложенно).
+ * Для запросов, отдающих сущность пользователя, проверяется, что число запросов не растет
+ * вместе с количеством связанных строк - защита от N+1 запросов.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = { "spring.config.location=classpath:application-test.yml" })
+@Sql(value = {"/create-user-before.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(value = {"/create-user-after.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class QueryCountTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenUtils tokenUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    static String username = "admin";
+    static String password = "12345";
+    static JwtResponse jwtResponse;
+
+    private Statistics statistics;
+
+    @Before
+    public void createToken() {
+        jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Проверяет, что количество запросов при получении данных текущего пользователя не зависит от числа связей.")
+    public void testUserInfoQueryCount() throws Exception {
+        perform("/api/auth/users/getUserInfo");
+        long baseline = statistics.getPrepareStatementCount();
+
+        addRelations();
+        statistics.clear();
+        perform("/api/auth/users/getUserInfo");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(baseline);
+    }
+
+    @Test
+    @DisplayName("Проверяет количество запросов при получении списка пользователей.")
+    public void testUserListQueryCount() throws Exception {
+        perform("/api/auth/users");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Проверяет количество запросов при получении ленты активностей.")
+    public void testFeedQueryCount() throws Exception {
+        perform("/api/auth/users/activities/feed");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Проверяет количество запросов при получении ленты подписок.")
+    public void testTimelineQueryCount() throws Exception {
+        perform("/api/auth/users/activities/timeline");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Проверяет, что количество запросов при получении пользователя не зависит от числа связей.")
+    public void testSubscriptionQueryCount() throws Exception {
+        perform("/api/auth/subscription/1");
+        long baseline = statistics.getPrepareStatementCount();
+
+        addRelations();
+        statistics.clear();
+        this.mockMvc.perform(get("/api/auth/subscription/1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subscriptions[0]").isNumber());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(baseline);
+    }
+
+    @Test
+    @DisplayName("Проверяет количество запросов при изменении подписки.")
+    public void testChangeSubscriptionQueryCount() throws Exception {
+        this.mockMvc.perform(post("/api/auth/subscription/change-subscription/2")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        // existsById, delete, insert, два счетчика, количество подписчиков
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Проверяет количество запросов при входе пользователя и отложенную запись даты последнего входа.")
+    public void testLoginQueryCount() throws Exception {
+        this.mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"userName\": \"user\", \"password\": \"12345\" }"))
+                .andExpect(status().isOk());
+        // пользователь для аутентификации и вставка токена
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        presenceService.flush();
+        assertThat(presenceService.getPendingCount()).isEqualTo(0);
+        assertThat(userRepository.findById(2L).get().getLastVisitedDate()).isNotNull();
+    }
+
+    /**
+     * Добавляет пользователю admin подроли, тэги, подписки и подписчиков.
+     */
+    private void addRelations() {
+        jdbcTemplate.update("INSERT INTO user_sub_role(user_id, sub_role_id) VALUES (1, 1), (1, 2), (1, 3)");
+        jdbcTemplate.update("INSERT INTO user_tag(id_user_tag, id_tag_user) VALUES (1, 1), (1, 2), (1, 3)");
+        jdbcTemplate.update("INSERT INTO user_subscriptions(subscriber_id, channel_id) VALUES (1, 2), (1, 3), (2, 1), (3, 1)");
+    }
+
+    private void perform(String url) throws Exception {
+        this.mockMvc.perform(get(url)
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+}
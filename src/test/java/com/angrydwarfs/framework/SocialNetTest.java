@@ -19,6 +19,7 @@ package com.angrydwarfs.framework;
 import com.angrydwarfs.framework.controllers.AuthController;
 import com.angrydwarfs.framework.controllers.SocialNetController;
 import com.angrydwarfs.framework.controllers.UserController;
+import com.angrydwarfs.framework.models.User;
 import com.angrydwarfs.framework.payload.request.FacebookLoginRequest;
 import com.angrydwarfs.framework.payload.response.JwtResponse;
 import com.angrydwarfs.framework.repository.TokenRepository;
@@ -26,6 +27,7 @@ import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
 import com.angrydwarfs.framework.service.FacebookService;
 import com.angrydwarfs.framework.service.client.FacebookClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,15 +38,26 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -54,6 +67,21 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @Sql(value = {"/create-user-before.sql"}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 @Sql(value = {"/create-user-after.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
 public class SocialNetTest {
+    private static final FacebookStubServer facebookStub;
+
+    static {
+        try {
+            facebookStub = new FacebookStubServer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void facebookProperties(DynamicPropertyRegistry registry) {
+        registry.add("dwarfsframework.app.facebookGraphUrl", facebookStub::getUrl);
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -75,6 +103,12 @@ public class SocialNetTest {
     @Autowired
     private SocialNetController socialNetController;
 
+    @Autowired
+    private FacebookService facebookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Value("${dwarfsframework.app.jwtSecret}")
     private String jwtSecret;
 
@@ -97,4 +131,51 @@ public class SocialNetTest {
         assertThat(socialNetController).isNotNull();
     }
 
+    @Test
+    @DisplayName("Проверяет создание пользователя при первом входе через facebook и вход того же пользователя повторно.")
+    public void facebookLoginIdempotent() throws Exception {
+        MvcResult first = this.mockMvc.perform(post("/api/auth/social/facebook")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"accessToken\": \"1001:phone\" }"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(first))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("1001@facebook.stub"))
+                .andExpect(jsonPath("$.roles[0]").value("ROLE_USER"));
+
+        User user = userRepository.findBySocialNetId("1001").get();
+
+        MvcResult second = this.mockMvc.perform(post("/api/auth/social/facebook")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{ \"accessToken\": \"1001:laptop\" }"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult secondLogin = this.mockMvc.perform(asyncDispatch(second))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(user.getId()))
+                .andReturn();
+
+        String token = objectMapper.readTree(secondLogin.getResponse().getContentAsString()).get("token").asText();
+        this.mockMvc.perform(get("/api/auth/users/getUserInfo")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(user.getUsername()));
+    }
+
+    @Test
+    @DisplayName("Проверяет, что одновременные первые входы одного пользователя facebook создают одного пользователя.")
+    public void facebookConcurrentFirstLogin() {
+        CompletableFuture<JwtResponse> phone = facebookService.loginUser("2002:phone");
+        CompletableFuture<JwtResponse> laptop = facebookService.loginUser("2002:laptop");
+        CompletableFuture<JwtResponse> tablet = facebookService.loginUser("2002:tablet");
+
+        Long userId = phone.join().getId();
+        assertEquals(userId, laptop.join().getId());
+        assertEquals(userId, tablet.join().getId());
+        assertEquals(1, userRepository.findAll().stream()
+                .filter(user -> "2002".equals(user.getSocialNetId()))
+                .count());
+    }
 }
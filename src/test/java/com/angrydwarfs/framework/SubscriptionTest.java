@@ -42,6 +42,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -143,8 +144,9 @@ public class SubscriptionTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect((jsonPath("subscriptions", Matchers.empty())))
-                .andExpect((jsonPath("subscribers", Matchers.contains(1))));
+                .andExpect(jsonPath("channelId").value(2))
+                .andExpect(jsonPath("subscribed").value(true))
+                .andExpect(jsonPath("subscribersCount").value(1));
 
     }
 
@@ -158,15 +160,59 @@ public class SubscriptionTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect((jsonPath("subscriptions", Matchers.empty())))
-                .andExpect((jsonPath("subscribers", Matchers.contains(1))));
+                .andExpect(jsonPath("channelId").value(2))
+                .andExpect(jsonPath("subscribed").value(true))
+                .andExpect(jsonPath("subscribersCount").value(1));
 
         this.mockMvc.perform(post("/api/auth/subscription/change-subscription/" + channelId)
                 .header("Authorization", "Bearer " + jwtResponse.getToken())
                 .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect((jsonPath("subscriptions", Matchers.empty())))
-                .andExpect((jsonPath("subscribers", Matchers.empty())));
+                .andExpect(jsonPath("subscribed").value(false))
+                .andExpect(jsonPath("subscribersCount").value(0));
+
+        assertEquals(0, userRepository.findById(new Long(1)).get().getSubscriptionsCount());
+    }
+
+    @Test
+    @DisplayName("Проверяет постраничные списки подписчиков и подписок.")
+    public void testSubscribersPage() throws Exception{
+        String channelId = "2";
+
+        this.mockMvc.perform(post("/api/auth/subscription/change-subscription/" + channelId)
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/api/auth/subscription/" + channelId + "/subscribers")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].userName").value("admin"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        this.mockMvc.perform(get("/api/auth/subscription/1/subscriptions")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(2))
+                .andExpect(jsonPath("$.items[0].userName").value("mod"));
+
+        assertEquals(1, userRepository.findById(new Long(2)).get().getSubscribersCount());
+        assertEquals(1, userRepository.findById(new Long(1)).get().getSubscriptionsCount());
+    }
+
+    @Test
+    @DisplayName("Проверяет запрет подписки на самого себя.")
+    public void testSelfSubscription() throws Exception{
+        this.mockMvc.perform(post("/api/auth/subscription/change-subscription/1")
+                .header("Authorization", "Bearer " + jwtResponse.getToken())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(400))
+                .andExpect(jsonPath("message").value("Error: you can not subscribe to yourself!"));
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.angrydwarfs.framework;
+
+import com.angrydwarfs.framework.security.jwt.TokenRevocationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenRevocationCacheTest {
+
+    @Test
+    @DisplayName("Проверяет, что заполненный кэш вытесняет давно не использованные токены и принимает новые")
+    void testEviction() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenRevocationCache cache = new TokenRevocationCache(registry, 100);
+        long expiry = System.currentTimeMillis() + 60_000;
+
+        cache.putActive("hot", expiry);
+        for (int i = 0; i < 1000; i++) {
+            cache.putActive("token-" + i, expiry);
+            assertEquals(Boolean.TRUE, cache.isActive("hot"));
+            assertEquals(Boolean.TRUE, cache.isActive("token-" + i));
+        }
+        assertNull(cache.isActive("token-0"));
+        assertTrue(registry.get("auth.token.cache.size").tag("set", "active").gauge().value() <= 100);
+        assertTrue(registry.get("auth.token.cache.evictions").tag("set", "active").functionCounter().count() >= 900);
+    }
+
+    @Test
+    @DisplayName("Проверяет, что отозванный токен не считается активным, а токен с истекшим сроком - промах")
+    void testRevokeAndExpiry() {
+        TokenRevocationCache cache = new TokenRevocationCache(new SimpleMeterRegistry(), 100);
+        long now = System.currentTimeMillis();
+
+        cache.putActive("token", now + 60_000);
+        cache.revoke("token", now + 60_000);
+        assertEquals(Boolean.FALSE, cache.isActive("token"));
+        cache.putActive("token", now + 60_000);
+        assertEquals(Boolean.FALSE, cache.isActive("token"));
+
+        cache.putActive("expired", now - 1);
+        assertNull(cache.isActive("expired"));
+    }
+}
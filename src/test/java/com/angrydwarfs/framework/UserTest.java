@@ -7,6 +7,7 @@ import com.angrydwarfs.framework.payload.response.JwtResponse;
 import com.angrydwarfs.framework.repository.TokenRepository;
 import com.angrydwarfs.framework.repository.UserRepository;
 import com.angrydwarfs.framework.security.jwt.TokenUtils;
+import com.angrydwarfs.framework.service.ReferenceDataRegistry;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -21,6 +22,7 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -56,6 +58,9 @@ public class UserTest {
     @Autowired
     TokenUtils tokenUtils;
 
+    @Autowired
+    ReferenceDataRegistry referenceData;
+
     @Value("${dwarfsframework.app.jwtSecret}")
     private String jwtSecret;
 
@@ -327,14 +332,58 @@ public class UserTest {
     public void testShowAllUsers() throws Exception{
         JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
         tokenUtils.makeToken(username, jwtResponse.getToken());
-        Date date = new Date();
-        String resp = "[{\"roles\":[{\"id\":1,\"mainRoleName\":\"ROLE_ADMINISTRATOR\"},{\"id\":2,\"mainRoleName\":\"ROLE_MODERATOR\"},{\"id\":3,\"mainRoleName\":\"ROLE_USER\"}],\"userEmail\":\"admin@admin.com\",\"id\":1,\"creationDate\":\"" + date + "\",\"userName\":\"admin\"},{\"roles\":[{\"id\":2,\"mainRoleName\":\"ROLE_MODERATOR\"},{\"id\":3,\"mainRoleName\":\"ROLE_USER\"}],\"userEmail\":\"mod@mod.com\",\"id\":2,\"creationDate\":\"" + date + "\",\"userName\":\"mod\"},{\"roles\":[{\"id\":3,\"mainRoleName\":\"ROLE_USER\"}],\"userEmail\":\"user@user.com\",\"id\":3,\"creationDate\":\"" + date + "\",\"userName\":\"user\"}]";
 
         this.mockMvc.perform(get("/api/auth/users/")
                 .header("Authorization", "Bearer " + jwtResponse.getToken()))
                 .andExpect(status().is(200))
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON_VALUE))
-                .andReturn().getResponse().getContentAsString().equals(resp);
+                .andExpect(jsonPath("items[0].userName").value("admin"))
+                .andExpect(jsonPath("items[0].userEmail").value("admin@admin.com"))
+                .andExpect(jsonPath("items[0].roles", Matchers.containsInAnyOrder("ROLE_ADMINISTRATOR", "ROLE_MODERATOR", "ROLE_USER")))
+                .andExpect(jsonPath("items[1].userName").value("mod"))
+                .andExpect(jsonPath("items[2].userName").value("user"))
+                .andExpect(jsonPath("items[2].roles", Matchers.contains("ROLE_USER")))
+                .andExpect(jsonPath("nextCursor").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Проверяет постраничное отображение списка пользователей.")
+    public void testShowUsersPage() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        this.mockMvc.perform(get("/api/auth/users/?limit=2")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().is(200))
+                .andExpect(jsonPath("items", Matchers.hasSize(2)))
+                .andExpect(jsonPath("nextCursor").value("2"));
+
+        this.mockMvc.perform(get("/api/auth/users/?limit=2&afterId=2")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().is(200))
+                .andExpect(jsonPath("items", Matchers.hasSize(1)))
+                .andExpect(jsonPath("items[0].userName").value("user"))
+                .andExpect(jsonPath("nextCursor").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Проверяет выгрузку всех пользователей в формате NDJSON.")
+    public void testExportUsers() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        MvcResult result = this.mockMvc.perform(get("/api/auth/users/export")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        Assert.assertTrue(lines[0].contains("\"userName\":\"admin\""));
+        Assert.assertTrue(lines[2].contains("\"userName\":\"user\""));
     }
 
     @Test
@@ -379,11 +428,27 @@ public class UserTest {
         this.mockMvc.perform(delete("/api/auth/users/tokens")
                 .header("Authorization", "Bearer " + jwtResponse.getToken()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("message").value("Tokens with expiry date was deleted successfully!"));
+                .andExpect(jsonPath("message").value("Tokens with expiry date was deleted successfully!"))
+                .andExpect(jsonPath("purged").value(1));
 
         Assert.assertEquals(1, tokenRepository.findAll().size());
     }
 
+    @Test
+    @DisplayName("Проверяет обновление справочников администратором.")
+    public void testRefreshReferenceData() throws Exception{
+        JwtResponse jwtResponse = tokenUtils.makeAuth(username, password);
+        tokenUtils.makeToken(username, jwtResponse.getToken());
+
+        this.mockMvc.perform(post("/api/auth/users/reference/refresh")
+                .header("Authorization", "Bearer " + jwtResponse.getToken()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("message").value("Reference data was refreshed successfully!"));
+
+        Assert.assertEquals(Integer.valueOf(3), referenceData.mainRole(EMainRole.ROLE_USER).getId());
+        Assert.assertEquals(Integer.valueOf(1), referenceData.tag(ETag.JOGGING).getId());
+    }
+
     @Test
     @DisplayName("Проверяет отображение списка авторизаций пользователя ADMIN.")
     public void testShowAllUsersRoles() {
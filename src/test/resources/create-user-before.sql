@@ -1,7 +1,9 @@
+DELETE FROM timeline;
 DELETE FROM user_subscriptions;
 DELETE FROM user_main_role;
 DELETE FROM user_sub_role;
 DELETE FROM user_tag;
+DELETE FROM activity_tags;
 DELETE FROM activity;
 DELETE FROM tags;
 DELETE FROM levels;